@@ -20,7 +20,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 .allowedOrigins("*")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS")
                 .allowedHeaders("*")
-                .exposedHeaders("Content-Disposition", "Content-Type", "Content-Length")
+                .exposedHeaders("Content-Disposition", "Content-Type", "Content-Length", "ETag", "Accept-Ranges", "Content-Range")
                 .maxAge(3600);
     }
     
@@ -30,7 +30,7 @@ public class CorsConfig implements WebMvcConfigurer {
         corsConfiguration.setAllowedOriginPatterns(List.of("*"));
         corsConfiguration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         corsConfiguration.setAllowedHeaders(List.of("*"));
-        corsConfiguration.setExposedHeaders(Arrays.asList("Content-Disposition", "Content-Type", "Content-Length"));
+        corsConfiguration.setExposedHeaders(Arrays.asList("Content-Disposition", "Content-Type", "Content-Length", "ETag", "Accept-Ranges", "Content-Range"));
         corsConfiguration.setAllowCredentials(true);
         corsConfiguration.setMaxAge(3600L);
         
@@ -0,0 +1,86 @@
+package com.chamikara.spring_backend.config;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips request bodies as they are written, without buffering the whole body. The
+ * receiving service must accept {@code Content-Encoding: gzip} requests.
+ */
+public class GzipRequestCompression implements ExchangeFilterFunction {
+    
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        ClientRequest compressed = ClientRequest.from(request)
+                .body((message, context) -> request.body().insert(new ClientHttpRequestDecorator(message) {
+                    
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        // The compressed length is not known up front
+                        getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+                        getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                        return super.writeWith(gzip(Flux.from(body), bufferFactory()));
+                    }
+                    
+                    @Override
+                    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                        return writeWith(Flux.from(body).concatMap(Flux::from));
+                    }
+                }, context))
+                .build();
+        return next.exchange(compressed);
+    }
+    
+    private static Flux<DataBuffer> gzip(Flux<? extends DataBuffer> body, DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = open(compressed);
+            Flux<DataBuffer> chunks = body.handle((buffer, sink) -> {
+                try {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    gzip.write(bytes);
+                } catch (IOException e) {
+                    sink.error(e);
+                    return;
+                } finally {
+                    DataBufferUtils.release(buffer);
+                }
+                // The deflater holds back output until it has enough input
+                if (compressed.size() > 0) {
+                    sink.next(bufferFactory.wrap(compressed.toByteArray()));
+                    compressed.reset();
+                }
+            });
+            Mono<DataBuffer> trailer = Mono.fromCallable(() -> {
+                // Writes the gzip trailer and frees the deflater
+                gzip.close();
+                return bufferFactory.wrap(compressed.toByteArray());
+            });
+            return Flux.concat(chunks, trailer);
+        });
+    }
+    
+    private static GZIPOutputStream open(ByteArrayOutputStream out) {
+        try {
+            return new GZIPOutputStream(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.chamikara.spring_backend.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+
+/**
+ * Serves file-backed resources through Tomcat's sendfile support. The container writes the
+ * file to the socket with {@code FileChannel.transferTo}, so image bytes go from the page
+ * cache to the network without being copied through the heap. Small files, HEAD requests
+ * and containers without sendfile fall back to regular streaming.
+ */
+@Configuration
+public class SendfileConfig {
+    
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    @Value("${image.serving.sendfile-min-size:48KB}")
+    private DataSize sendfileMinSize;
+    
+    @Bean
+    public ResourceHttpMessageConverter sendfileResourceHttpMessageConverter() {
+        return new ResourceHttpMessageConverter() {
+            @Override
+            protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException {
+                if (!resource.isFile() || !sendfile(resource, 0, resource.contentLength())) {
+                    super.writeContent(resource, outputMessage);
+                }
+            }
+        };
+    }
+    
+    @Bean
+    public ResourceRegionHttpMessageConverter sendfileResourceRegionHttpMessageConverter() {
+        return new ResourceRegionHttpMessageConverter() {
+            @Override
+            protected void writeResourceRegion(ResourceRegion region, HttpOutputMessage outputMessage) throws IOException {
+                Resource resource = region.getResource();
+                if (!resource.isFile()) {
+                    super.writeResourceRegion(region, outputMessage);
+                    return;
+                }
+                long length = resource.contentLength();
+                long start = region.getPosition();
+                long end = Math.min(start + region.getCount(), length);
+                if (!sendfile(resource, start, end)) {
+                    super.writeResourceRegion(region, outputMessage);
+                    return;
+                }
+                HttpHeaders headers = outputMessage.getHeaders();
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+                headers.setContentLength(end - start);
+            }
+        };
+    }
+    
+    /**
+     * Hand the byte range {@code [start, end)} of a file resource to the container. The body is then
+     * written by the container when the response is committed.
+     *
+     * @return false if the resource has to be streamed by the caller instead
+     */
+    private boolean sendfile(Resource resource, long start, long end) throws IOException {
+        if (end - start < sendfileMinSize.toBytes()
+                || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))
+                || HttpMethod.HEAD.matches(request.getMethod())) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME, resource.getFile().getAbsolutePath());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, end);
+        return true;
+    }
+}
@@ -1,12 +1,19 @@
 package com.chamikara.spring_backend.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 
@@ -19,23 +26,98 @@ public class WebClientConfig {
     @Value("${fastapi.service.timeout:60000}")
     private long timeout;
     
+    @Value("${fastapi.client.max-in-memory-size:50MB}")
+    private DataSize maxInMemorySize;
+    
+    @Value("${fastapi.client.connect-timeout:5s}")
+    private Duration connectTimeout;
+    
+    @Value("${fastapi.client.protocol:HTTP11}")
+    private HttpProtocol protocol;
+    
+    @Value("${fastapi.client.keep-alive:true}")
+    private boolean keepAlive;
+    
+    @Value("${fastapi.client.compress-requests:false}")
+    private boolean compressRequests;
+    
+    @Value("${fastapi.client.pool.max-connections:32}")
+    private int maxConnections;
+    
+    @Value("${fastapi.client.pool.pending-acquire-max-count:256}")
+    private int pendingAcquireMaxCount;
+    
+    @Value("${fastapi.client.pool.pending-acquire-timeout:45s}")
+    private Duration pendingAcquireTimeout;
+    
+    @Value("${fastapi.client.pool.max-idle-time:30s}")
+    private Duration maxIdleTime;
+    
+    @Value("${fastapi.client.pool.max-life-time:10m}")
+    private Duration maxLifeTime;
+    
+    @Value("${fastapi.client.pool.evict-in-background:30s}")
+    private Duration evictInBackground;
+    
+    /**
+     * Connection pool dedicated to the FastAPI service, so detections reuse warm
+     * connections and a burst of them waits for a connection instead of opening new ones.
+     * Pool occupancy is exposed as {@code detection.client.pool.*} gauges.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider inferenceConnectionProvider(MeterRegistry meterRegistry) {
+        return ConnectionProvider.builder("fastapi")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInBackground)
+                // The pool's metrics view is not referenced elsewhere, so the gauges must hold it
+                .metrics(true, () -> (poolName, id, remoteAddress, metrics) -> {
+                    String remote = remoteAddress.toString();
+                    Gauge.builder("detection.client.pool.active", metrics, pool -> pool.acquiredSize())
+                            .tag("remote", remote).strongReference(true).register(meterRegistry);
+                    Gauge.builder("detection.client.pool.idle", metrics, pool -> pool.idleSize())
+                            .tag("remote", remote).strongReference(true).register(meterRegistry);
+                    Gauge.builder("detection.client.pool.allocated", metrics, pool -> pool.allocatedSize())
+                            .tag("remote", remote).strongReference(true).register(meterRegistry);
+                    Gauge.builder("detection.client.pool.pending", metrics, pool -> pool.pendingAcquireSize())
+                            .tag("remote", remote).strongReference(true).register(meterRegistry);
+                })
+                .build();
+    }
+    
     @Bean
-    public WebClient webClient() {
-        // Configure HTTP client with timeout
-        HttpClient httpClient = HttpClient.create()
+    public WebClient webClient(ConnectionProvider inferenceConnectionProvider, MeterRegistry meterRegistry) {
+        Counter opened = Counter.builder("detection.client.connections.opened").register(meterRegistry);
+        
+        // Configure HTTP client with timeout and the pooled connections
+        HttpClient httpClient = HttpClient.create(inferenceConnectionProvider)
+                .protocol(protocol)
+                .keepAlive(keepAlive)
+                .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                // Accept compressed responses
+                .compress(true)
+                // Runs for new connections only, not for ones taken from the pool
+                .doOnChannelInit((observer, channel, remoteAddress) -> opened.increment())
                 .responseTimeout(Duration.ofMillis(timeout));
         
         // Configure exchange strategies for larger payloads (images)
         ExchangeStrategies strategies = ExchangeStrategies.builder()
                 .codecs(configurer -> configurer
                         .defaultCodecs()
-                        .maxInMemorySize(50 * 1024 * 1024)) // 50MB buffer for large images
+                        .maxInMemorySize((int) maxInMemorySize.toBytes()))
                 .build();
         
-        return WebClient.builder()
+        WebClient.Builder builder = WebClient.builder()
                 .baseUrl(fastApiUrl)
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .exchangeStrategies(strategies)
-                .build();
+                .exchangeStrategies(strategies);
+        if (compressRequests) {
+            builder.filter(new GzipRequestCompression());
+        }
+        return builder.build();
     }
 }
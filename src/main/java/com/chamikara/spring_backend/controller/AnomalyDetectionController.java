@@ -1,13 +1,32 @@
 package com.chamikara.spring_backend.controller;
 
+import com.chamikara.spring_backend.detection.Deadline;
+import com.chamikara.spring_backend.detection.DetectionInput;
+import com.chamikara.spring_backend.detection.InferenceHealth;
+import com.chamikara.spring_backend.dto.request.BatchDetectionRequest;
+import com.chamikara.spring_backend.dto.request.DetectionRequest;
 import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
 import com.chamikara.spring_backend.dto.response.ApiResponse;
+import com.chamikara.spring_backend.dto.response.DetectionBatchResponse;
+import com.chamikara.spring_backend.dto.response.DetectionJobResponse;
+import com.chamikara.spring_backend.service.AnnotationService;
 import com.chamikara.spring_backend.service.AnomalyDetectionService;
+import com.chamikara.spring_backend.service.DetectionBatchService;
+import com.chamikara.spring_backend.service.DetectionJobService;
+import com.chamikara.spring_backend.service.InspectionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -18,6 +37,10 @@ import java.util.Map;
 public class AnomalyDetectionController {
     
     private final AnomalyDetectionService anomalyDetectionService;
+    private final AnnotationService annotationService;
+    private final InspectionService inspectionService;
+    private final DetectionJobService detectionJobService;
+    private final DetectionBatchService detectionBatchService;
     
     /**
      * Detect anomalies by comparing baseline and maintenance images
@@ -27,10 +50,19 @@ public class AnomalyDetectionController {
      * - baselineImage: String - Base64 encoded image (required)
      * - maintenanceImage: String - Base64 encoded image (required)
      * - sliderPercent: Double - Optional threshold adjustment
+     * - force: Boolean - Run full detection even if the images look unchanged
+     *
+     * The response is completed asynchronously, so no request thread is held while
+     * the FastAPI service works. An optional {@code X-Request-Timeout} header gives the
+     * caller's time budget in milliseconds; the detection is abandoned with 504 once it
+     * has passed, or as soon as the client disconnects.
      */
     @PostMapping("/detect")
-    public ResponseEntity<ApiResponse<AnomalyDetectionResponse>> detectAnomalies(
-            @RequestBody Map<String, Object> request) {
+    public DeferredResult<ResponseEntity<ApiResponse<AnomalyDetectionResponse>>> detectAnomalies(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = Deadline.HEADER, required = false) String timeout) {
+        
+        Deadline deadline = Deadline.fromHeader(timeout);
         
         String transformerId = (String) request.get("transformerId");
         String baselineImage = (String) request.get("baselineImage");
@@ -38,28 +70,119 @@ public class AnomalyDetectionController {
         Double sliderPercent = request.get("sliderPercent") != null 
                 ? ((Number) request.get("sliderPercent")).doubleValue() 
                 : null;
+        boolean force = Boolean.TRUE.equals(request.get("force"));
         
         log.info("POST /anomaly-detection/detect - Detecting anomalies for transformer: {}", transformerId);
         
         if (transformerId == null || transformerId.isEmpty()) {
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error("Transformer ID is required"));
+            return DetectionResults.completed(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Transformer ID is required")));
         }
         
         if (baselineImage == null || baselineImage.isEmpty()) {
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error("Baseline image is required"));
+            return DetectionResults.completed(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Baseline image is required")));
         }
         
         if (maintenanceImage == null || maintenanceImage.isEmpty()) {
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error("Maintenance image is required"));
+            return DetectionResults.completed(ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Maintenance image is required")));
         }
         
-        AnomalyDetectionResponse response = anomalyDetectionService.detectAnomalies(
-                transformerId, baselineImage, maintenanceImage, sliderPercent);
+        return DetectionResults.of(
+                anomalyDetectionService.detectAnomaliesAsync(transformerId, baselineImage, maintenanceImage, sliderPercent, force)
+                        .map(response -> ResponseEntity.ok(ApiResponse.success("Anomaly detection completed", response))),
+                deadline);
+    }
+    
+    /**
+     * Detect anomalies for a stored inspection. The baseline image is resolved from the
+     * inspection's transformer and the maintenance image from the inspection itself,
+     * so the request carries no image data. The detected anomalies are stored as the
+     * inspection's AI annotations before the response is sent. Takes the same
+     * {@code X-Request-Timeout} header as {@code /detect}.
+     */
+    @PostMapping("/inspections/{id}/detect")
+    public DeferredResult<ResponseEntity<ApiResponse<AnomalyDetectionResponse>>> detectInspectionAnomalies(
+            @PathVariable Long id,
+            @RequestBody(required = false) DetectionRequest request,
+            @RequestHeader(value = Deadline.HEADER, required = false) String timeout) {
+        log.info("POST /anomaly-detection/inspections/{}/detect - Detecting anomalies", id);
         
-        return ResponseEntity.ok(ApiResponse.success("Anomaly detection completed", response));
+        Deadline deadline = Deadline.fromHeader(timeout);
+        DetectionInput input = inspectionService.getDetectionInput(id).toBuilder()
+                .sliderPercent(request != null ? request.getSliderPercent() : null)
+                .force(request != null && request.isForced())
+                .build();
+        return DetectionResults.of(anomalyDetectionService.detectAnomaliesAsync(input)
+                        .flatMap(response -> Mono.fromCallable(() -> annotationService.saveDetectedAnnotations(id, response))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .thenReturn(response))
+                        .map(response -> ResponseEntity.ok(ApiResponse.success("Anomaly detection completed", response))),
+                deadline);
+    }
+    
+    /**
+     * Queue detection for a stored inspection. Returns 202 with the job at once; the
+     * result is fetched by polling the job or subscribing to its event stream.
+     */
+    @PostMapping("/inspections/{id}/jobs")
+    public ResponseEntity<ApiResponse<DetectionJobResponse>> submitDetectionJob(
+            @PathVariable Long id,
+            @RequestBody(required = false) DetectionRequest request) {
+        log.info("POST /anomaly-detection/inspections/{}/jobs - Queueing detection job", id);
+        
+        DetectionJobResponse job = detectionJobService.submit(id,
+                request != null ? request.getSliderPercent() : null, request != null && request.isForced());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Detection job queued", job));
+    }
+    
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApiResponse<DetectionJobResponse>> getDetectionJob(@PathVariable Long jobId) {
+        log.info("GET /anomaly-detection/jobs/{} - Fetching detection job", jobId);
+        DetectionJobResponse job = detectionJobService.getJob(jobId);
+        return ResponseEntity.ok(ApiResponse.success("Detection job retrieved successfully", job));
+    }
+    
+    /**
+     * Server-Sent Events stream of a job's state. Each event is named {@code status} and
+     * carries the job; the stream ends once the job has completed or failed.
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDetectionJob(@PathVariable Long jobId) {
+        log.info("GET /anomaly-detection/jobs/{}/events - Subscribing to detection job", jobId);
+        return detectionJobService.subscribe(jobId);
+    }
+    
+    /**
+     * Queue detection for every inspection matching the filters (region, transformerIds,
+     * status). Returns 202 with the batch; progress is reported by the batch endpoint and
+     * each inspection's result by its job.
+     */
+    @PostMapping("/batches")
+    public ResponseEntity<ApiResponse<DetectionBatchResponse>> submitDetectionBatch(
+            @RequestBody BatchDetectionRequest request) {
+        log.info("POST /anomaly-detection/batches - Queueing detection batch (region: {}, status: {}, transformers: {})",
+                request.getRegion(), request.getStatus(), request.getTransformerIds());
+        
+        DetectionBatchResponse batch = detectionBatchService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Detection batch queued", batch));
+    }
+    
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<ApiResponse<DetectionBatchResponse>> getDetectionBatch(@PathVariable Long batchId) {
+        log.info("GET /anomaly-detection/batches/{} - Fetching detection batch", batchId);
+        DetectionBatchResponse batch = detectionBatchService.getBatch(batchId);
+        return ResponseEntity.ok(ApiResponse.success("Detection batch retrieved successfully", batch));
+    }
+    
+    @GetMapping("/batches/{batchId}/jobs")
+    public ResponseEntity<ApiResponse<List<DetectionJobResponse>>> getDetectionBatchJobs(@PathVariable Long batchId) {
+        log.info("GET /anomaly-detection/batches/{}/jobs - Fetching detection batch jobs", batchId);
+        List<DetectionJobResponse> jobs = detectionBatchService.getBatchJobs(batchId);
+        return ResponseEntity.ok(ApiResponse.success("Detection batch jobs retrieved successfully", jobs));
     }
     
     /**
@@ -69,12 +192,26 @@ public class AnomalyDetectionController {
     public ResponseEntity<ApiResponse<Map<String, Object>>> checkServiceHealth() {
         log.info("GET /anomaly-detection/health - Checking FastAPI service health");
         
-        boolean isHealthy = anomalyDetectionService.isServiceHealthy();
+        InferenceHealth health = anomalyDetectionService.getHealth();
+        boolean isHealthy = health.isHealthy();
         
-        Map<String, Object> healthStatus = Map.of(
-                "fastApiService", isHealthy ? "healthy" : "unhealthy",
-                "status", isHealthy ? "All services operational" : "FastAPI service is down"
-        );
+        // Values may be null before the first probe, which Map.of does not allow
+        Map<String, Object> healthStatus = new LinkedHashMap<>();
+        healthStatus.put("fastApiService", isHealthy ? "healthy" : "unhealthy");
+        healthStatus.put("status", isHealthy ? "All services operational" : "FastAPI service is down");
+        healthStatus.put("lastChecked", health.getCheckedAt());
+        healthStatus.put("latencyMs", health.getLatencyMillis());
+        healthStatus.put("circuitBreaker", anomalyDetectionService.getCircuitBreakerState());
+        healthStatus.put("concurrencyLimit", anomalyDetectionService.getConcurrencyLimit());
+        long now = System.nanoTime();
+        healthStatus.put("endpoints", anomalyDetectionService.getEndpoints().stream()
+                .map(endpoint -> Map.of(
+                        "url", endpoint.getUrl(),
+                        "weight", endpoint.getWeight(),
+                        "healthy", endpoint.isHealthy(),
+                        "ejected", endpoint.isEjected(now),
+                        "outstanding", endpoint.getOutstanding()))
+                .toList());
         
         if (isHealthy) {
             return ResponseEntity.ok(ApiResponse.success("Service health check passed", healthStatus));
@@ -0,0 +1,37 @@
+package com.chamikara.spring_backend.controller;
+
+import com.chamikara.spring_backend.detection.Deadline;
+import org.springframework.web.context.request.async.DeferredResult;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Completes detection responses asynchronously and stops the detection once nobody is
+ * waiting for it. Returning a {@link Mono} directly only cancels it on the async request
+ * timeout; here it is also cancelled when the client disconnects or the request otherwise
+ * ends early, and when the caller's {@link Deadline} passes. Cancelling a detection gives
+ * up its place in the scheduler queue and cancels its FastAPI call unless another caller
+ * shares it.
+ */
+final class DetectionResults {
+    
+    private DetectionResults() {
+    }
+    
+    static <T> DeferredResult<T> of(Mono<T> detection, Deadline deadline) {
+        DeferredResult<T> result = new DeferredResult<>();
+        Mono<T> bounded = deadline != null ? deadline.bound(detection) : detection;
+        // Setting a result again has no effect, so completion only matters for an empty Mono
+        Disposable subscription = bounded.subscribe(result::setResult, result::setErrorResult, () -> result.setResult(null));
+        result.onTimeout(subscription::dispose);
+        result.onError(e -> subscription.dispose());
+        result.onCompletion(subscription::dispose);
+        return result;
+    }
+    
+    static <T> DeferredResult<T> completed(T value) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.setResult(value);
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package com.chamikara.spring_backend.controller;
+
+import com.chamikara.spring_backend.service.ImageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Content-addressed image access. The URL names the image bytes by hash, so responses
+ * are cacheable forever and clients never need to revalidate them.
+ */
+@RestController
+@RequestMapping("/images")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class ImageController {
+    
+    private final ImageService imageService;
+    
+    @GetMapping("/{hash}")
+    public ResponseEntity<Resource> getImage(
+            @PathVariable String hash,
+            @RequestParam(required = false) String size,
+            WebRequest request) {
+        log.info("GET /images/{} - Fetching image, size: {}", hash, size);
+        return ImageResponses.immutable(imageService.getImage(hash, size), request);
+    }
+}
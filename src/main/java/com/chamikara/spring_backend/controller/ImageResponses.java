@@ -0,0 +1,63 @@
+package com.chamikara.spring_backend.controller;
+
+import com.chamikara.spring_backend.storage.ImageContent;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+
+/**
+ * Builds binary image responses. Every response carries a strong ETag derived from the
+ * content hash; Spring answers matching {@code If-None-Match} requests with 304 and serves
+ * {@code Range} requests as 206 partial content.
+ */
+final class ImageResponses {
+    
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    
+    private ImageResponses() {
+    }
+    
+    /**
+     * Response for an entity image URL, whose image can be replaced. Clients may cache it
+     * but must revalidate, which costs a 304 when the image is unchanged.
+     */
+    static ResponseEntity<Resource> ok(ImageContent content, WebRequest request) {
+        return build(content, request, CacheControl.noCache());
+    }
+    
+    /**
+     * Response for a content-addressed URL, whose bytes can never change
+     */
+    static ResponseEntity<Resource> immutable(ImageContent content, WebRequest request) {
+        return build(content, request, IMMUTABLE);
+    }
+    
+    private static ResponseEntity<Resource> build(ImageContent content, WebRequest request, CacheControl cacheControl) {
+        String etag = "\"" + content.getImage().getHash() + "\"";
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(content.getImage().getContentType()))
+                .contentLength(content.getImage().getSize())
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(rangeable(content.getResource(), etag, request));
+    }
+    
+    /**
+     * Honour {@code If-Range}: a resumed download of an image that has since been replaced
+     * must receive the whole new image, not a range of it. Spring only applies ranges to
+     * plain resources, so the full-body case is wrapped as a (lazily opened) stream resource.
+     */
+    private static Resource rangeable(Resource resource, String etag, WebRequest request) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.equals(etag)) {
+            return resource;
+        }
+        return new InputStreamResource(resource);
+    }
+}
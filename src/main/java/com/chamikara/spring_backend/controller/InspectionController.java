@@ -3,13 +3,21 @@ package com.chamikara.spring_backend.controller;
 import com.chamikara.spring_backend.dto.request.InspectionRequest;
 import com.chamikara.spring_backend.dto.response.ApiResponse;
 import com.chamikara.spring_backend.dto.response.InspectionResponse;
+import com.chamikara.spring_backend.dto.response.ThermalStatsResponse;
+import com.chamikara.spring_backend.service.AnnotatedImageService;
+import com.chamikara.spring_backend.service.ImageService;
 import com.chamikara.spring_backend.service.InspectionService;
+import com.chamikara.spring_backend.service.ThermalStatsService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 
@@ -21,6 +29,9 @@ import java.util.List;
 public class InspectionController {
     
     private final InspectionService inspectionService;
+    private final ImageService imageService;
+    private final AnnotatedImageService annotatedImageService;
+    private final ThermalStatsService thermalStatsService;
     
     @GetMapping
     public ResponseEntity<ApiResponse<List<InspectionResponse>>> getAllInspections() {
@@ -36,6 +47,31 @@ public class InspectionController {
         return ResponseEntity.ok(ApiResponse.success("Inspection retrieved successfully", inspection));
     }
     
+    @GetMapping("/{id}/images/maintenance")
+    public ResponseEntity<Resource> getMaintenanceImage(
+            @PathVariable Long id,
+            @RequestParam(required = false) String size,
+            WebRequest request) {
+        log.info("GET /inspections/{}/images/maintenance - Fetching maintenance image, size: {}", id, size);
+        return ImageResponses.ok(imageService.getImage(inspectionService.getMaintenanceImageHash(id), size), request);
+    }
+    
+    @GetMapping("/{id}/images/annotated")
+    public ResponseEntity<Resource> getAnnotatedImage(
+            @PathVariable Long id,
+            @RequestParam(required = false) String size,
+            WebRequest request) {
+        log.info("GET /inspections/{}/images/annotated - Fetching annotated image, size: {}", id, size);
+        return ImageResponses.ok(imageService.getImage(annotatedImageService.getAnnotatedImageHash(id), size), request);
+    }
+    
+    @GetMapping("/{id}/thermal-stats")
+    public ResponseEntity<ApiResponse<ThermalStatsResponse>> getThermalStats(@PathVariable Long id) {
+        log.info("GET /inspections/{}/thermal-stats - Computing thermal statistics", id);
+        ThermalStatsResponse stats = thermalStatsService.getThermalStats(id);
+        return ResponseEntity.ok(ApiResponse.success("Thermal statistics retrieved successfully", stats));
+    }
+    
     @GetMapping("/transformer/{transformerId}")
     public ResponseEntity<ApiResponse<List<InspectionResponse>>> getInspectionsByTransformerId(
             @PathVariable Long transformerId) {
@@ -62,6 +98,17 @@ public class InspectionController {
         return ResponseEntity.ok(ApiResponse.success("Inspection updated successfully", updated));
     }
     
+    @PutMapping(value = "/{id}/images/maintenance", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ApiResponse<InspectionResponse>> uploadMaintenanceImage(
+            @PathVariable Long id,
+            @RequestPart("file") MultipartFile file,
+            @RequestParam(required = false) String uploadDate,
+            @RequestParam(required = false) String weather) {
+        log.info("PUT /inspections/{}/images/maintenance - Uploading maintenance image ({} bytes)", id, file.getSize());
+        InspectionResponse updated = inspectionService.uploadMaintenanceImage(id, file, uploadDate, weather);
+        return ResponseEntity.ok(ApiResponse.success("Maintenance image uploaded successfully", updated));
+    }
+    
     @DeleteMapping("/{id}")
     public ResponseEntity<ApiResponse<Void>> deleteInspection(@PathVariable Long id) {
         log.info("DELETE /inspections/{} - Deleting inspection", id);
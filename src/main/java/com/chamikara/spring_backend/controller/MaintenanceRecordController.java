@@ -3,15 +3,18 @@ package com.chamikara.spring_backend.controller;
 import com.chamikara.spring_backend.dto.request.MaintenanceRecordRequest;
 import com.chamikara.spring_backend.dto.response.ApiResponse;
 import com.chamikara.spring_backend.dto.response.MaintenanceRecordResponse;
+import com.chamikara.spring_backend.service.ImageService;
 import com.chamikara.spring_backend.service.MaintenanceRecordService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -23,6 +26,7 @@ import java.util.List;
 public class MaintenanceRecordController {
     
     private final MaintenanceRecordService maintenanceRecordService;
+    private final ImageService imageService;
     
     @GetMapping
     public ResponseEntity<ApiResponse<List<MaintenanceRecordResponse>>> getAllRecords(
@@ -46,6 +50,15 @@ public class MaintenanceRecordController {
         return ResponseEntity.ok(ApiResponse.success("Record retrieved successfully", record));
     }
     
+    @GetMapping("/{id}/images/annotated")
+    public ResponseEntity<Resource> getAnnotatedImage(
+            @PathVariable Long id,
+            @RequestParam(required = false) String size,
+            WebRequest request) {
+        log.info("GET /records/{}/images/annotated - Fetching annotated image, size: {}", id, size);
+        return ImageResponses.ok(imageService.getImage(maintenanceRecordService.getAnnotatedImageHash(id), size), request);
+    }
+    
     @GetMapping("/transformer/{transformerId}")
     public ResponseEntity<ApiResponse<List<MaintenanceRecordResponse>>> getRecordsByTransformerId(
             @PathVariable Long transformerId) {
@@ -3,13 +3,18 @@ package com.chamikara.spring_backend.controller;
 import com.chamikara.spring_backend.dto.request.TransformerRequest;
 import com.chamikara.spring_backend.dto.response.ApiResponse;
 import com.chamikara.spring_backend.dto.response.TransformerResponse;
+import com.chamikara.spring_backend.service.ImageService;
 import com.chamikara.spring_backend.service.TransformerService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 
@@ -21,6 +26,7 @@ import java.util.List;
 public class TransformerController {
     
     private final TransformerService transformerService;
+    private final ImageService imageService;
     
     @GetMapping
     public ResponseEntity<ApiResponse<List<TransformerResponse>>> getAllTransformers() {
@@ -36,6 +42,15 @@ public class TransformerController {
         return ResponseEntity.ok(ApiResponse.success("Transformer retrieved successfully", transformer));
     }
     
+    @GetMapping("/{id}/images/baseline")
+    public ResponseEntity<Resource> getBaselineImage(
+            @PathVariable Long id,
+            @RequestParam(required = false) String size,
+            WebRequest request) {
+        log.info("GET /transformers/{}/images/baseline - Fetching baseline image, size: {}", id, size);
+        return ImageResponses.ok(imageService.getImage(transformerService.getBaselineImageHash(id), size), request);
+    }
+    
     @PostMapping
     public ResponseEntity<ApiResponse<TransformerResponse>> createTransformer(
             @Valid @RequestBody TransformerRequest request) {
@@ -54,6 +69,16 @@ public class TransformerController {
         return ResponseEntity.ok(ApiResponse.success("Transformer updated successfully", updated));
     }
     
+    @PutMapping(value = "/{id}/images/baseline", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ApiResponse<TransformerResponse>> uploadBaselineImage(
+            @PathVariable Long id,
+            @RequestPart("file") MultipartFile file,
+            @RequestParam(required = false) String uploadDate) {
+        log.info("PUT /transformers/{}/images/baseline - Uploading baseline image ({} bytes)", id, file.getSize());
+        TransformerResponse updated = transformerService.uploadBaselineImage(id, file, uploadDate);
+        return ResponseEntity.ok(ApiResponse.success("Baseline image uploaded successfully", updated));
+    }
+    
     @DeleteMapping("/{id}")
     public ResponseEntity<ApiResponse<Void>> deleteTransformer(@PathVariable Long id) {
         log.info("DELETE /transformers/{} - Deleting transformer", id);
@@ -0,0 +1,147 @@
+package com.chamikara.spring_backend.detection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limit on concurrent calls to the inference service that adapts to its latency (AIMD with
+ * a Vegas-style congestion signal). The latency of an unloaded service is tracked as a
+ * slowly rising minimum. A call slower than {@code latency-tolerance} times that baseline,
+ * or one that failed or timed out, means the service is queueing work: the limit is cut by
+ * {@code backoff-ratio}. Otherwise, while the limit is actually being used, it grows by one
+ * per limit's worth of calls. Calls beyond the limit are rejected immediately rather than
+ * queued behind a saturated service.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimit {
+    
+    // Share of each sample above the baseline it moves towards, so a permanently slower
+    // service is eventually taken as the new normal
+    private static final double BASELINE_DRIFT = 0.01;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    
+    private double limit;
+    private double baselineNanos = Double.NaN;
+    private int inFlight;
+    
+    private final Counter rejected;
+    
+    public AdaptiveConcurrencyLimit(
+            MeterRegistry meterRegistry,
+            @Value("${detection.resilience.limit.initial:8}") int initialLimit,
+            @Value("${detection.resilience.limit.min:1}") int minLimit,
+            @Value("${detection.resilience.limit.max:64}") int maxLimit,
+            @Value("${detection.resilience.limit.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${detection.resilience.limit.backoff-ratio:0.8}") double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        
+        this.rejected = Counter.builder("detection.limit.rejected").register(meterRegistry);
+        Gauge.builder("detection.limit.current", this, AdaptiveConcurrencyLimit::getLimit).register(meterRegistry);
+        Gauge.builder("detection.limit.in-flight", this, AdaptiveConcurrencyLimit::getInFlight).register(meterRegistry);
+    }
+    
+    /**
+     * @return a permit to call the service, or null if the limit is reached
+     */
+    public synchronized Permit tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected.increment();
+            return null;
+        }
+        inFlight++;
+        return new Permit(inFlight);
+    }
+    
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+    
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+    
+    private synchronized void sample(long latencyNanos, int inFlightAtStart) {
+        inFlight--;
+        if (Double.isNaN(baselineNanos) || latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+        } else {
+            baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+        }
+        
+        if (latencyNanos > baselineNanos * latencyTolerance) {
+            decrease();
+        } else if (inFlightAtStart * 2 >= limit) {
+            // Only grow when the limit is what holds callers back, not on an idle service
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+    
+    private synchronized void drop() {
+        inFlight--;
+        decrease();
+    }
+    
+    private synchronized void release() {
+        inFlight--;
+    }
+    
+    private void decrease() {
+        int previous = (int) limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        if ((int) limit != previous) {
+            log.debug("Inference concurrency limit reduced from {} to {}", previous, (int) limit);
+        }
+    }
+    
+    /**
+     * One admitted call. Exactly one of the outcome methods takes effect.
+     */
+    public class Permit {
+        
+        private final int inFlightAtStart;
+        private final AtomicBoolean done = new AtomicBoolean();
+        
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+        
+        public void onSuccess(long latencyNanos) {
+            if (done.compareAndSet(false, true)) {
+                sample(latencyNanos, inFlightAtStart);
+            }
+        }
+        
+        /**
+         * The call failed or timed out, a sign of overload
+         */
+        public void onDropped() {
+            if (done.compareAndSet(false, true)) {
+                drop();
+            }
+        }
+        
+        /**
+         * The call ended without a usable latency sample, e.g. it was cancelled
+         */
+        public void release() {
+            if (done.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimit.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.exception.DeadlineExceededException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * The time by which a caller needs its answer, given as a budget in milliseconds in the
+ * {@value #HEADER} request header. A relative budget is used rather than a wall-clock
+ * time, so clock differences between client and server do not matter. Work bounded by the
+ * deadline is cancelled when it passes, which cancels any FastAPI call made for it.
+ */
+public final class Deadline {
+    
+    public static final String HEADER = "X-Request-Timeout";
+    
+    private final long expiresAt;
+    
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+    
+    /**
+     * @return the deadline given by a {@value #HEADER} value, or null if there is none
+     */
+    public static Deadline fromHeader(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        long millis;
+        try {
+            millis = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(HEADER + " must be a number of milliseconds");
+        }
+        if (millis <= 0) {
+            throw new IllegalArgumentException(HEADER + " must be positive");
+        }
+        return after(Duration.ofMillis(millis));
+    }
+    
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAt - System.nanoTime()));
+    }
+    
+    /**
+     * Fail the work with {@link DeadlineExceededException} and cancel it if it has not
+     * completed by the deadline. The budget is measured from when the deadline was
+     * created, so time already spent on the request counts against it.
+     */
+    public <T> Mono<T> bound(Mono<T> work) {
+        return Mono.defer(() -> {
+            Duration remaining = remaining();
+            if (remaining.isZero()) {
+                return Mono.error(new DeadlineExceededException("Request deadline passed before detection started"));
+            }
+            return work.timeout(remaining, Mono.error(() -> new DeadlineExceededException(
+                    "Detection did not complete within the request deadline")));
+        });
+    }
+}
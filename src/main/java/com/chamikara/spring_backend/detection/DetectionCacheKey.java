@@ -0,0 +1,36 @@
+package com.chamikara.spring_backend.detection;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Identifies a detection result: the two image contents, the threshold adjustment and
+ * the model that produced it. The transformer is deliberately not part of the key, as
+ * it does not influence the result.
+ */
+@Value
+public class DetectionCacheKey {
+    
+    String baselineHash;
+    String maintenanceHash;
+    Double sliderPercent;
+    String modelVersion;
+    
+    /**
+     * Stable file-name-safe digest of the key, used by the on-disk tier
+     */
+    public String digest() {
+        String canonical = String.join("|", baselineHash, maintenanceHash,
+                sliderPercent != null ? sliderPercent.toString() : "-", modelVersion);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
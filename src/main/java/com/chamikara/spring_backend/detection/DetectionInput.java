@@ -0,0 +1,27 @@
+package com.chamikara.spring_backend.detection;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Everything needed to run anomaly detection for one image pair, with images
+ * referenced by their hash in the image store, and how to schedule it
+ */
+@Value
+@Builder(toBuilder = true)
+public class DetectionInput {
+    
+    String transformerId;
+    String baselineHash;
+    String maintenanceHash;
+    Double sliderPercent;
+    
+    // Run full detection even if the images look unchanged
+    boolean force;
+    
+    // Fair-share key when scheduled; null for the default flow
+    String region;
+    
+    @Builder.Default
+    DetectionPriority priority = DetectionPriority.INTERACTIVE;
+}
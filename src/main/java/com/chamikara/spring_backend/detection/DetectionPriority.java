@@ -0,0 +1,22 @@
+package com.chamikara.spring_backend.detection;
+
+/**
+ * Scheduling class of a detection, highest priority first
+ */
+public enum DetectionPriority {
+    
+    /**
+     * Someone is waiting for the result, e.g. an inspector at the screen
+     */
+    INTERACTIVE,
+    
+    /**
+     * Individually queued detection jobs
+     */
+    STANDARD,
+    
+    /**
+     * Batch re-processing and speculative prefetches
+     */
+    BULK
+}
@@ -0,0 +1,337 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.exception.ServiceException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache of anomaly detection results. Results are held as serialized JSON in an
+ * in-memory LRU bounded by entry count and bytes, backed by an on-disk LRU bounded by bytes
+ * that survives restarts. A disk hit is promoted to memory. Every lookup returns a fresh
+ * copy, so callers may modify the result.
+ * <p>
+ * Callers may run on Netty event loops, so only the memory tier is used on the calling
+ * thread. Disk reads run on the bounded elastic scheduler, and disk writes are handed to it
+ * without waiting for them.
+ * <p>
+ * Lookups and evictions are counted as {@code detection.cache.requests} (tagged by
+ * {@code result} and {@code tier}) and {@code detection.cache.evictions} (tagged by
+ * {@code tier}).
+ */
+@Component
+@Slf4j
+public class DetectionResultCache {
+    
+    private static final String SUFFIX = ".json";
+    
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxMemoryBytes;
+    private final Path diskRoot;
+    private final Path tempDir;
+    private final long maxDiskBytes;
+    
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<DetectionCacheKey, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter memoryEvictions;
+    private final Counter diskEvictions;
+    
+    public DetectionResultCache(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${detection.cache.enabled:true}") boolean enabled,
+            @Value("${detection.cache.memory.max-entries:1000}") int maxEntries,
+            @Value("${detection.cache.memory.max-size:32MB}") DataSize maxMemorySize,
+            @Value("${detection.cache.disk.root:data/detection-cache}") String diskRoot,
+            @Value("${detection.cache.disk.max-size:512MB}") DataSize maxDiskSize) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxMemoryBytes = maxMemorySize.toBytes();
+        this.diskRoot = Paths.get(diskRoot).toAbsolutePath().normalize();
+        this.tempDir = this.diskRoot.resolve("tmp");
+        this.maxDiskBytes = maxDiskSize.toBytes();
+        
+        this.memoryHits = requests(meterRegistry, "hit", "memory");
+        this.diskHits = requests(meterRegistry, "hit", "disk");
+        this.misses = requests(meterRegistry, "miss", "none");
+        this.memoryEvictions = evictions(meterRegistry, "memory");
+        this.diskEvictions = evictions(meterRegistry, "disk");
+        Gauge.builder("detection.cache.entries", this, cache -> cache.memoryEntries()).tag("tier", "memory").register(meterRegistry);
+        Gauge.builder("detection.cache.entries", this, cache -> cache.diskEntries()).tag("tier", "disk").register(meterRegistry);
+        Gauge.builder("detection.cache.size", this, cache -> cache.memoryBytes()).tag("tier", "memory").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("detection.cache.size", this, cache -> cache.diskBytes()).tag("tier", "disk").baseUnit("bytes").register(meterRegistry);
+        
+        if (enabled) {
+            loadDiskIndex();
+        }
+    }
+    
+    /**
+     * @return the cached result, empty on a miss. A memory hit or a key absent from both
+     *         tiers is answered on the subscribing thread; a disk hit is read on the bounded
+     *         elastic scheduler and emitted there.
+     */
+    public Mono<AnomalyDetectionResponse> get(DetectionCacheKey key) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            byte[] json;
+            synchronized (memory) {
+                json = memory.get(key);
+            }
+            if (json != null) {
+                memoryHits.increment();
+                return Mono.justOrEmpty(parse(json));
+            }
+            
+            String name = key.digest();
+            boolean onDisk;
+            synchronized (disk) {
+                onDisk = disk.containsKey(name);
+            }
+            if (!onDisk) {
+                misses.increment();
+                return Mono.empty();
+            }
+            return Mono.fromCallable(() -> getFromDisk(key, name))
+                    .subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+    
+    private AnomalyDetectionResponse getFromDisk(DetectionCacheKey key, String name) {
+        byte[] json = readDisk(name);
+        AnomalyDetectionResponse response = json != null ? parse(json) : null;
+        if (response == null) {
+            misses.increment();
+            return null;
+        }
+        diskHits.increment();
+        putMemory(key, json);
+        return response;
+    }
+    
+    public void put(DetectionCacheKey key, AnomalyDetectionResponse response) {
+        if (!enabled || response == null) {
+            return;
+        }
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize detection result for caching", e);
+            return;
+        }
+        putMemory(key, json);
+        if (json.length > maxDiskBytes) {
+            return;
+        }
+        try {
+            Schedulers.boundedElastic().schedule(() -> writeDisk(key.digest(), json));
+        } catch (RejectedExecutionException e) {
+            // The memory tier still has it
+            log.warn("Skipping disk write of detection result, scheduler is saturated");
+        }
+    }
+    
+    private void putMemory(DetectionCacheKey key, byte[] json) {
+        if (json.length > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            byte[] previous = memory.put(key, json);
+            memoryBytes += json.length - (previous != null ? previous.length : 0);
+            
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memory.size() > maxEntries || memoryBytes > maxMemoryBytes) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+                memoryEvictions.increment();
+            }
+        }
+    }
+    
+    private byte[] readDisk(String name) {
+        synchronized (disk) {
+            if (disk.get(name) == null) {
+                return null;
+            }
+        }
+        Path path = diskRoot.resolve(name + SUFFIX);
+        try {
+            byte[] json = Files.readAllBytes(path);
+            // Keeps the LRU order across restarts, which rebuild it from modification times
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return json;
+        } catch (NoSuchFileException e) {
+            // Evicted concurrently
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read cached detection result {}", path, e);
+            return null;
+        }
+    }
+    
+    private void writeDisk(String name, byte[] json) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(tempDir, "result-", ".part");
+            Files.write(temp, json);
+            Files.move(temp, diskRoot.resolve(name + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write cached detection result {}", name, e);
+            deleteQuietly(temp);
+            return;
+        }
+        
+        synchronized (disk) {
+            Long previous = disk.put(name, (long) json.length);
+            diskBytes += json.length - (previous != null ? previous : 0);
+        }
+        trimDisk();
+    }
+    
+    /**
+     * Evict least recently used files until the disk tier fits its size bound
+     */
+    private void trimDisk() {
+        List<String> evicted = new ArrayList<>();
+        synchronized (disk) {
+            Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes) {
+                Map.Entry<String, Long> entry = eldest.next();
+                diskBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (String name : evicted) {
+            deleteQuietly(diskRoot.resolve(name + SUFFIX));
+            diskEvictions.increment();
+        }
+    }
+    
+    /**
+     * Rebuild the disk LRU from the files left by the previous run, oldest first
+     */
+    private void loadDiskIndex() {
+        try {
+            Files.createDirectories(tempDir);
+            try (Stream<Path> files = Files.list(diskRoot)) {
+                files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparing(DetectionResultCache::lastModified))
+                        .forEach(path -> {
+                            String file = path.getFileName().toString();
+                            long size = path.toFile().length();
+                            disk.put(file.substring(0, file.length() - SUFFIX.length()), size);
+                            diskBytes += size;
+                        });
+            }
+        } catch (IOException e) {
+            throw new ServiceException("Failed to initialise detection result cache at " + diskRoot, e);
+        }
+        // The size bound may have been lowered since the previous run
+        trimDisk();
+        log.info("Detection result cache initialised at {} with {} entries ({} bytes)", diskRoot, disk.size(), diskBytes);
+    }
+    
+    private AnomalyDetectionResponse parse(byte[] json) {
+        try {
+            return objectMapper.readValue(json, AnomalyDetectionResponse.class);
+        } catch (IOException e) {
+            log.warn("Discarding unreadable cached detection result", e);
+            return null;
+        }
+    }
+    
+    private int memoryEntries() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+    
+    private long memoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+    
+    private int diskEntries() {
+        synchronized (disk) {
+            return disk.size();
+        }
+    }
+    
+    private long diskBytes() {
+        synchronized (disk) {
+            return diskBytes;
+        }
+    }
+    
+    private static Counter requests(MeterRegistry registry, String result, String tier) {
+        return Counter.builder("detection.cache.requests")
+                .tag("result", result)
+                .tag("tier", tier)
+                .register(registry);
+    }
+    
+    private static Counter evictions(MeterRegistry registry, String tier) {
+        return Counter.builder("detection.cache.evictions")
+                .tag("tier", tier)
+                .register(registry);
+    }
+    
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+    
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+}
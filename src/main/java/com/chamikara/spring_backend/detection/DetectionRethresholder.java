@@ -0,0 +1,245 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse.DetectedAnomaly;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse.DetectionMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers slider changes locally from an earlier detection of the same image pair.
+ * <p>
+ * FastAPI scales its base thresholds by {@code 1 + sliderPercent / 100}, keeps candidates
+ * whose confidence reaches the potential-fault threshold and classifies those reaching the
+ * fault threshold as faults. A detection therefore contains every candidate for any slider
+ * value that yields higher thresholds, and those results are computed here by filtering it.
+ * A lower threshold than the retained detection's needs FastAPI; the wider result then
+ * replaces the retained one.
+ * <p>
+ * Severity and image-level labels are learned from FastAPI responses. Responses whose
+ * metrics do not follow the scheme above are never used, so a changed model falls back to
+ * calling FastAPI rather than producing wrong results.
+ */
+@Component
+@Slf4j
+public class DetectionRethresholder {
+    
+    private static final double TOLERANCE = 1e-3;
+    
+    private enum Level { NONE, POTENTIAL, FAULT }
+    
+    private final boolean enabled;
+    private final int maxCandidates;
+    
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<PairKey, AnomalyDetectionResponse> candidates = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> labels = new ConcurrentHashMap<>();
+    private final Set<String> conflictingLabels = ConcurrentHashMap.newKeySet();
+    
+    private final Counter local;
+    private final Counter remote;
+    
+    public DetectionRethresholder(
+            MeterRegistry meterRegistry,
+            @Value("${detection.rethreshold.enabled:true}") boolean enabled,
+            @Value("${detection.rethreshold.max-candidates:1000}") int maxCandidates) {
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+        this.local = Counter.builder("detection.rethreshold.requests").tag("result", "local").register(meterRegistry);
+        this.remote = Counter.builder("detection.rethreshold.requests").tag("result", "remote").register(meterRegistry);
+    }
+    
+    /**
+     * Compute the result for the key's slider value from the retained detection of its
+     * image pair
+     *
+     * @return empty if FastAPI has to be called
+     */
+    public Optional<AnomalyDetectionResponse> rethreshold(DetectionCacheKey key) {
+        if (!enabled || key.getSliderPercent() == null) {
+            return Optional.empty();
+        }
+        
+        AnomalyDetectionResponse candidate;
+        synchronized (candidates) {
+            candidate = candidates.get(PairKey.of(key));
+        }
+        Optional<AnomalyDetectionResponse> result = candidate != null
+                ? filter(candidate, key.getSliderPercent())
+                : Optional.empty();
+        (result.isPresent() ? local : remote).increment();
+        return result;
+    }
+    
+    /**
+     * Retain a FastAPI response as the candidate set of its image pair, unless the
+     * retained one already covers lower thresholds
+     */
+    public void offer(DetectionCacheKey key, AnomalyDetectionResponse response) {
+        if (!enabled || !isConsistent(response)) {
+            return;
+        }
+        learnLabels(response);
+        
+        synchronized (candidates) {
+            PairKey pair = PairKey.of(key);
+            AnomalyDetectionResponse retained = candidates.get(pair);
+            if (retained == null
+                    || response.getMetrics().getThresholdPotential() < retained.getMetrics().getThresholdPotential()) {
+                candidates.put(pair, response);
+            }
+            
+            Iterator<AnomalyDetectionResponse> eldest = candidates.values().iterator();
+            while (candidates.size() > maxCandidates) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+    
+    private Optional<AnomalyDetectionResponse> filter(AnomalyDetectionResponse candidate, double sliderPercent) {
+        DetectionMetrics base = candidate.getMetrics();
+        double scale = scale(sliderPercent);
+        double potential = base.getBasePotential() * scale;
+        double fault = base.getBaseFault() * scale;
+        if (potential < base.getThresholdPotential() - TOLERANCE * Math.max(1, Math.abs(base.getThresholdPotential()))) {
+            // Candidates below the retained threshold were never reported
+            return Optional.empty();
+        }
+        
+        List<DetectedAnomaly> kept = candidate.getAnomalies().stream()
+                .filter(anomaly -> anomaly.getConfidence() >= potential)
+                .toList();
+        List<DetectedAnomaly> anomalies = new ArrayList<>(kept.size());
+        Level top = Level.NONE;
+        for (DetectedAnomaly anomaly : kept) {
+            Level level = anomaly.getConfidence() >= fault ? Level.FAULT : Level.POTENTIAL;
+            String severity = labels.get(severityLabel(level));
+            if (severity == null) {
+                return Optional.empty();
+            }
+            top = level.compareTo(top) > 0 ? level : top;
+            anomalies.add(DetectedAnomaly.builder()
+                    .id(anomaly.getId())
+                    .bbox(anomaly.getBbox())
+                    .confidence(anomaly.getConfidence())
+                    .severity(severity)
+                    .classification(anomaly.getClassification())
+                    .area(anomaly.getArea())
+                    .build());
+        }
+        String imageLevelLabel = labels.get(imageLabel(top));
+        if (imageLevelLabel == null) {
+            return Optional.empty();
+        }
+        
+        return Optional.of(AnomalyDetectionResponse.builder()
+                .requestId(candidate.getRequestId())
+                .transformerId(candidate.getTransformerId())
+                .timestamp(candidate.getTimestamp())
+                .imageLevelLabel(imageLevelLabel)
+                .anomalyCount(anomalies.size())
+                .anomalies(anomalies)
+                .metrics(DetectionMetrics.builder()
+                        .meanSsim(base.getMeanSsim())
+                        .warpModel(base.getWarpModel())
+                        .thresholdPotential(potential)
+                        .thresholdFault(fault)
+                        .basePotential(base.getBasePotential())
+                        .baseFault(base.getBaseFault())
+                        .sliderPercent(sliderPercent)
+                        .scaleApplied(scale)
+                        .thresholdSource(base.getThresholdSource())
+                        .ratio(base.getRatio())
+                        .build())
+                // FastAPI's overlay shows the retained threshold, not this one
+                .overlayImage(null)
+                .build());
+    }
+    
+    /**
+     * Whether the response follows the threshold scheme this class relies on
+     */
+    private static boolean isConsistent(AnomalyDetectionResponse response) {
+        DetectionMetrics metrics = response != null ? response.getMetrics() : null;
+        if (metrics == null || response.getAnomalies() == null || response.getImageLevelLabel() == null
+                || metrics.getSliderPercent() == null || metrics.getScaleApplied() == null
+                || metrics.getBasePotential() == null || metrics.getBaseFault() == null
+                || metrics.getThresholdPotential() == null || metrics.getThresholdFault() == null) {
+            return false;
+        }
+        double scale = metrics.getScaleApplied();
+        if (!approximately(scale, scale(metrics.getSliderPercent()))
+                || !approximately(metrics.getThresholdPotential(), metrics.getBasePotential() * scale)
+                || !approximately(metrics.getThresholdFault(), metrics.getBaseFault() * scale)) {
+            return false;
+        }
+        return response.getAnomalies().stream().allMatch(anomaly -> anomaly.getConfidence() != null
+                && anomaly.getSeverity() != null
+                && anomaly.getConfidence() >= metrics.getThresholdPotential() - TOLERANCE);
+    }
+    
+    private void learnLabels(AnomalyDetectionResponse response) {
+        double fault = response.getMetrics().getThresholdFault();
+        Level top = Level.NONE;
+        for (DetectedAnomaly anomaly : response.getAnomalies()) {
+            Level level = anomaly.getConfidence() >= fault ? Level.FAULT : Level.POTENTIAL;
+            learn(severityLabel(level), anomaly.getSeverity());
+            top = level.compareTo(top) > 0 ? level : top;
+        }
+        learn(imageLabel(top), response.getImageLevelLabel());
+    }
+    
+    private void learn(String key, String label) {
+        if (conflictingLabels.contains(key)) {
+            return;
+        }
+        String known = labels.putIfAbsent(key, label);
+        if (known != null && !known.equals(label)) {
+            // Not determined by the thresholds alone; never answer this case locally
+            log.warn("Detection label for {} is ambiguous ({} vs {}), slider changes involving it will call FastAPI",
+                    key, known, label);
+            conflictingLabels.add(key);
+            labels.remove(key);
+        }
+    }
+    
+    private static String severityLabel(Level level) {
+        return "severity:" + level;
+    }
+    
+    private static String imageLabel(Level level) {
+        return "image:" + level;
+    }
+    
+    private static double scale(double sliderPercent) {
+        return 1 + sliderPercent / 100;
+    }
+    
+    private static boolean approximately(double actual, double expected) {
+        return Math.abs(actual - expected) <= TOLERANCE * Math.max(1, Math.abs(expected));
+    }
+    
+    @lombok.Value
+    private static class PairKey {
+        String baselineHash;
+        String maintenanceHash;
+        String modelVersion;
+        
+        static PairKey of(DetectionCacheKey key) {
+            return new PairKey(key.getBaselineHash(), key.getMaintenanceHash(), key.getModelVersion());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Admission queue in front of FastAPI calls. Detections wait here until a call slot is
+ * free, and are admitted strictly by {@link DetectionPriority}: a lower class only runs
+ * while no higher class is waiting. Lower classes may also only fill part of the adaptive
+ * concurrency limit ({@code standard.share}, {@code bulk.share}), so the rest is kept free
+ * for interactive detections arriving later.
+ * <p>
+ * Within a class, flows (transformer regions) share the slots by weighted fair queuing:
+ * each detection is tagged with a virtual finish time advancing by {@code 1 / weight} per
+ * detection of its flow, and the earliest tag runs first. A region queueing thousands of
+ * detections therefore does not hold back a region queueing a few.
+ * <p>
+ * A detection still waiting after its class's {@code max-wait} is rejected. When
+ * {@code queue-capacity} detections are waiting, a new one evicts the latest waiting
+ * detection of a lower class; queued jobs rejected this way are retried by the job queue.
+ * Calls already running are never interrupted.
+ */
+@Component
+@Slf4j
+public class DetectionScheduler {
+    
+    private static final int WAITING = 0;
+    private static final int DISPATCHED = 1;
+    private static final int STARTED = 2;
+    private static final int RELEASED = 3;
+    
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final int queueCapacity;
+    private final Map<String, Integer> flowWeights = new HashMap<>();
+    private final Map<DetectionPriority, Lane> lanes = new EnumMap<>(DetectionPriority.class);
+    
+    // Guarded by this
+    private int running;
+    private int queued;
+    private long sequence;
+    
+    public DetectionScheduler(
+            MeterRegistry meterRegistry,
+            AdaptiveConcurrencyLimit concurrencyLimit,
+            @Value("${detection.scheduler.queue-capacity:1000}") int queueCapacity,
+            @Value("${detection.scheduler.flow-weights:}") List<String> flowWeights,
+            @Value("${detection.scheduler.interactive.max-wait:5s}") Duration interactiveMaxWait,
+            @Value("${detection.scheduler.standard.max-wait:2m}") Duration standardMaxWait,
+            @Value("${detection.scheduler.standard.share:0.75}") double standardShare,
+            @Value("${detection.scheduler.bulk.max-wait:10m}") Duration bulkMaxWait,
+            @Value("${detection.scheduler.bulk.share:0.5}") double bulkShare) {
+        this.concurrencyLimit = concurrencyLimit;
+        this.queueCapacity = queueCapacity;
+        for (String entry : flowWeights) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || Integer.parseInt(parts[1].trim()) < 1) {
+                throw new IllegalStateException("Invalid detection.scheduler.flow-weights entry '" + entry
+                        + "', expected region:weight with a weight of at least 1");
+            }
+            this.flowWeights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        
+        lanes.put(DetectionPriority.INTERACTIVE, new Lane(DetectionPriority.INTERACTIVE, interactiveMaxWait, 1.0, meterRegistry));
+        lanes.put(DetectionPriority.STANDARD, new Lane(DetectionPriority.STANDARD, standardMaxWait, standardShare, meterRegistry));
+        lanes.put(DetectionPriority.BULK, new Lane(DetectionPriority.BULK, bulkMaxWait, bulkShare, meterRegistry));
+        Gauge.builder("detection.scheduler.running", this, DetectionScheduler::getRunning).register(meterRegistry);
+    }
+    
+    /**
+     * Run the call once admitted. Cancelling while queued gives up the place in the queue.
+     *
+     * @param flow fair-share key, usually the transformer's region; null for the default flow
+     */
+    public <T> Mono<T> schedule(DetectionPriority priority, String flow, Supplier<Mono<T>> call) {
+        Lane lane = lanes.get(priority);
+        return Mono.<Ticket>create(sink -> {
+                    Ticket ticket = enqueue(lane, flow != null ? flow : "", sink);
+                    if (ticket != null) {
+                        sink.onCancel(() -> cancel(ticket));
+                    }
+                })
+                .timeout(lane.maxWait)
+                .onErrorMap(TimeoutException.class, e -> {
+                    lane.timedOut.increment();
+                    return new ServiceUnavailableException("Anomaly detection is busy, " + priority.name().toLowerCase()
+                            + " detection waited " + lane.maxWait + " without being admitted", Duration.ofSeconds(5));
+                })
+                .flatMap(ticket -> ticket.state.compareAndSet(DISPATCHED, STARTED)
+                        ? Mono.defer(call).doFinally(signal -> finish())
+                        : Mono.empty());
+    }
+    
+    public synchronized int getRunning() {
+        return running;
+    }
+    
+    public synchronized int getQueued(DetectionPriority priority) {
+        return lanes.get(priority).queue.size();
+    }
+    
+    private Ticket enqueue(Lane lane, String flow, MonoSink<Ticket> sink) {
+        Ticket evicted = null;
+        Ticket ticket = null;
+        List<Ticket> admitted = List.of();
+        synchronized (this) {
+            if (queued >= queueCapacity) {
+                evicted = evictBelow(lane.priority);
+            }
+            if (queued < queueCapacity) {
+                ticket = lane.add(flow, sink);
+                admitted = drain();
+            } else {
+                lane.full.increment();
+            }
+        }
+        
+        if (evicted != null) {
+            evicted.sink.error(new ServiceUnavailableException(
+                    "Queued detection was preempted by higher priority work", Duration.ofSeconds(30)));
+        }
+        if (ticket == null) {
+            sink.error(new ServiceUnavailableException("Anomaly detection queue is full", Duration.ofSeconds(5)));
+        }
+        admitted.forEach(admittedTicket -> admittedTicket.sink.success(admittedTicket));
+        return ticket;
+    }
+    
+    private void cancel(Ticket ticket) {
+        List<Ticket> admitted;
+        synchronized (this) {
+            if (ticket.state.compareAndSet(WAITING, RELEASED)) {
+                ticket.lane.queue.remove(ticket);
+                queued--;
+                return;
+            }
+            if (!ticket.state.compareAndSet(DISPATCHED, RELEASED)) {
+                return;
+            }
+            // Admitted but cancelled before the call started, e.g. by the wait timeout
+            running--;
+            admitted = drain();
+        }
+        admitted.forEach(admittedTicket -> admittedTicket.sink.success(admittedTicket));
+    }
+    
+    private void finish() {
+        List<Ticket> admitted;
+        synchronized (this) {
+            running--;
+            admitted = drain();
+        }
+        admitted.forEach(admittedTicket -> admittedTicket.sink.success(admittedTicket));
+    }
+    
+    /**
+     * Take waiting detections off the queues while their class may use a free slot. The
+     * caller completes their sinks once the lock is released.
+     */
+    private List<Ticket> drain() {
+        List<Ticket> admitted = new ArrayList<>();
+        int limit = concurrencyLimit.getLimit();
+        for (Lane lane : lanes.values()) {
+            while (!lane.queue.isEmpty() && running < limit * lane.share) {
+                Ticket ticket = lane.poll();
+                queued--;
+                running++;
+                ticket.state.set(DISPATCHED);
+                lane.waitTime.record(Duration.ofNanos(System.nanoTime() - ticket.enqueuedAt));
+                admitted.add(ticket);
+            }
+            if (!lane.queue.isEmpty()) {
+                // Lower classes wait while a higher one is waiting
+                break;
+            }
+        }
+        return admitted;
+    }
+    
+    /**
+     * Remove the most recently queued detection of the lowest class below the given one
+     */
+    private Ticket evictBelow(DetectionPriority priority) {
+        DetectionPriority[] priorities = DetectionPriority.values();
+        for (int i = priorities.length - 1; i > priority.ordinal(); i--) {
+            DetectionPriority lower = priorities[i];
+            Lane lane = lanes.get(lower);
+            Ticket latest = lane.queue.stream().max(Comparator.comparingLong(ticket -> ticket.sequence)).orElse(null);
+            if (latest != null) {
+                lane.queue.remove(latest);
+                latest.state.set(RELEASED);
+                queued--;
+                lane.preempted.increment();
+                log.debug("Preempted queued {} detection for {} work", lower, priority);
+                return latest;
+            }
+        }
+        return null;
+    }
+    
+    private int weight(String flow) {
+        return flowWeights.getOrDefault(flow, 1);
+    }
+    
+    /**
+     * Waiting detections of one class, ordered by weighted fair queuing across flows
+     */
+    private final class Lane {
+        
+        private final DetectionPriority priority;
+        private final Duration maxWait;
+        private final double share;
+        private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+                Comparator.comparingDouble((Ticket ticket) -> ticket.finishTag).thenComparingLong(ticket -> ticket.sequence));
+        private final Map<String, Double> lastFinishTags = new HashMap<>();
+        private double virtualTime;
+        
+        private final Timer waitTime;
+        private final Counter timedOut;
+        private final Counter preempted;
+        private final Counter full;
+        
+        private Lane(DetectionPriority priority, Duration maxWait, double share, MeterRegistry meterRegistry) {
+            this.priority = priority;
+            this.maxWait = maxWait;
+            this.share = share;
+            String tag = priority.name().toLowerCase();
+            this.waitTime = Timer.builder("detection.scheduler.wait")
+                    .tag("priority", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.timedOut = rejected(meterRegistry, tag, "timeout");
+            this.preempted = rejected(meterRegistry, tag, "preempted");
+            this.full = rejected(meterRegistry, tag, "full");
+            Gauge.builder("detection.scheduler.queued", DetectionScheduler.this, scheduler -> scheduler.getQueued(priority))
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        
+        private Ticket add(String flow, MonoSink<Ticket> sink) {
+            double startTag = Math.max(virtualTime, lastFinishTags.getOrDefault(flow, 0.0));
+            double finishTag = startTag + 1.0 / weight(flow);
+            lastFinishTags.put(flow, finishTag);
+            Ticket ticket = new Ticket(this, startTag, finishTag, sequence++, sink);
+            queue.add(ticket);
+            queued++;
+            return ticket;
+        }
+        
+        private Ticket poll() {
+            Ticket ticket = queue.poll();
+            virtualTime = ticket.startTag;
+            if (queue.isEmpty()) {
+                // Every flow is idle, so their history no longer matters
+                lastFinishTags.clear();
+                virtualTime = 0;
+            }
+            return ticket;
+        }
+        
+        private static Counter rejected(MeterRegistry meterRegistry, String priority, String reason) {
+            return Counter.builder("detection.scheduler.rejected")
+                    .tag("priority", priority)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+    
+    private static final class Ticket {
+        
+        private final Lane lane;
+        private final double startTag;
+        private final double finishTag;
+        private final long sequence;
+        private final MonoSink<Ticket> sink;
+        private final long enqueuedAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        
+        private Ticket(Lane lane, double startTag, double finishTag, long sequence, MonoSink<Ticket> sink) {
+            this.lane = lane;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.chamikara.spring_backend.detection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * When to hedge a call to the inference service, that is send a duplicate to another
+ * replica because the first one is slow to answer. The hedging delay is the
+ * {@code percentile} of the latency of the last {@code window-size} successful calls, but
+ * at least {@code min-delay}, so only calls already slower than nearly all others are
+ * duplicated. Hedges are limited to {@code budget} per call on average, so a service that
+ * is slow across the board does not receive twice the load.
+ * <p>
+ * A hedge runs under the circuit breaker and concurrency limit permits of the call it
+ * duplicates, so the budget is the only cap on the extra load: with the default of 0.1,
+ * FastAPI may see up to 10% more requests than the limit admits. Hedges deliberately take
+ * no limit permit of their own, since the scheduler admits calls up to the limit and a
+ * hedge holding one would get an admitted call rejected.
+ * <p>
+ * Attempts cancelled after the hedging delay, such as the slower attempt of a hedged
+ * call, are recorded with the time they had run. Their real latency is at least that
+ * long, and leaving them out would bias the window towards fast calls and lower the delay.
+ */
+@Component
+public class HedgingPolicy {
+    
+    // Hedges that may be saved up while calls are fast, so a short burst of slow calls can
+    // all be hedged
+    private static final double MAX_TOKENS = 10;
+    
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final int minimumCalls;
+    private final double budget;
+    
+    private final long[] window;
+    private int windowPosition;
+    private int recorded;
+    private long delayNanos;
+    private boolean stale = true;
+    private double tokens;
+    
+    private final Counter sent;
+    private final Counter won;
+    private final Counter throttled;
+    
+    public HedgingPolicy(
+            MeterRegistry meterRegistry,
+            @Value("${fastapi.service.hedging.enabled:true}") boolean enabled,
+            @Value("${fastapi.service.hedging.percentile:95}") double percentile,
+            @Value("${fastapi.service.hedging.min-delay:50ms}") Duration minDelay,
+            @Value("${fastapi.service.hedging.window-size:200}") int windowSize,
+            @Value("${fastapi.service.hedging.minimum-calls:20}") int minimumCalls,
+            @Value("${fastapi.service.hedging.budget:0.1}") double budget) {
+        this.enabled = enabled;
+        this.percentile = percentile / 100;
+        this.minDelayNanos = minDelay.toNanos();
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.budget = budget;
+        this.window = new long[windowSize];
+        
+        this.sent = Counter.builder("detection.hedge.requests").tag("result", "sent").register(meterRegistry);
+        this.won = Counter.builder("detection.hedge.requests").tag("result", "won").register(meterRegistry);
+        this.throttled = Counter.builder("detection.hedge.requests").tag("result", "throttled").register(meterRegistry);
+        Gauge.builder("detection.hedge.delay", this, policy -> {
+                    Duration delay = policy.delay();
+                    return delay != null ? delay.toMillis() : Double.NaN;
+                })
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Count a call towards the hedging budget
+     */
+    public synchronized void onCall() {
+        tokens = Math.min(tokens + budget, MAX_TOKENS);
+    }
+    
+    /**
+     * @return how long to wait for an answer before hedging, or null if calls are not
+     *         hedged, or too few have been seen to tell what is slow
+     */
+    public synchronized Duration delay() {
+        if (!enabled || recorded < minimumCalls) {
+            return null;
+        }
+        if (stale) {
+            long[] samples = Arrays.copyOf(window, recorded);
+            Arrays.sort(samples);
+            int index = (int) Math.ceil(percentile * samples.length) - 1;
+            long value = samples.length == 0 ? 0 : samples[Math.max(0, Math.min(index, samples.length - 1))];
+            delayNanos = Math.max(value, minDelayNanos);
+            stale = false;
+        }
+        return Duration.ofNanos(delayNanos);
+    }
+    
+    /**
+     * @return whether the budget allows a hedge now, which is then taken from it
+     */
+    public synchronized boolean tryHedge() {
+        if (tokens < 1) {
+            throttled.increment();
+            return false;
+        }
+        tokens--;
+        sent.increment();
+        return true;
+    }
+    
+    /**
+     * Record the latency of a call that answered successfully
+     */
+    public synchronized void record(long latencyNanos) {
+        window[windowPosition] = latencyNanos;
+        windowPosition = (windowPosition + 1) % window.length;
+        recorded = Math.min(recorded + 1, window.length);
+        stale = true;
+    }
+    
+    /**
+     * Record an attempt cancelled before it answered. Its latency is censored: it is at
+     * least the elapsed time, which is recorded if the attempt was already slower than the
+     * hedging delay. Attempts cancelled sooner say nothing about the tail and are ignored.
+     */
+    public synchronized void recordCancelled(long elapsedNanos) {
+        Duration delay = delay();
+        if (delay != null && elapsedNanos >= delay.toNanos()) {
+            record(elapsedNanos);
+        }
+    }
+    
+    /**
+     * Record that a hedge answered before the call it duplicated
+     */
+    public void onHedgeWon() {
+        won.increment();
+    }
+}
@@ -0,0 +1,217 @@
+package com.chamikara.spring_backend.detection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for calls to the inference service. While closed, the outcome of the
+ * last {@code window-size} calls is kept; once at least {@code minimum-calls} have been
+ * seen and the share of failed or slow calls reaches {@code failure-rate-threshold}, the
+ * breaker opens and calls are rejected without reaching the service. After
+ * {@code open-duration} a few trial calls are let through (half-open); if they all
+ * succeed the breaker closes, otherwise it opens again.
+ */
+@Component
+@Slf4j
+public class InferenceCircuitBreaker {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoTime;
+    
+    private final boolean[] window;
+    private int windowPosition;
+    private int recorded;
+    private int failures;
+    
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+    
+    private final Counter rejected;
+    
+    @Autowired
+    public InferenceCircuitBreaker(
+            MeterRegistry meterRegistry,
+            @Value("${detection.resilience.breaker.window-size:20}") int windowSize,
+            @Value("${detection.resilience.breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${detection.resilience.breaker.failure-rate-threshold:50}") double failureRateThreshold,
+            @Value("${detection.resilience.breaker.slow-call-threshold:20s}") Duration slowCallThreshold,
+            @Value("${detection.resilience.breaker.open-duration:30s}") Duration openDuration,
+            @Value("${detection.resilience.breaker.half-open-calls:3}") int halfOpenCalls) {
+        this(meterRegistry, windowSize, minimumCalls, failureRateThreshold, slowCallThreshold, openDuration,
+                halfOpenCalls, System::nanoTime);
+    }
+    
+    /**
+     * @param nanoTime clock measuring how long the breaker has been open, replaced in tests
+     */
+    InferenceCircuitBreaker(MeterRegistry meterRegistry, int windowSize, int minimumCalls,
+                            double failureRateThreshold, Duration slowCallThreshold, Duration openDuration,
+                            int halfOpenCalls, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold / 100;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new boolean[windowSize];
+        
+        this.rejected = Counter.builder("detection.breaker.rejected").register(meterRegistry);
+        Gauge.builder("detection.breaker.state", this, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * @return a permit to call the service, or null if the call must be rejected
+     */
+    public synchronized Permit tryAcquire() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= openDuration.toNanos()) {
+            transition(State.HALF_OPEN);
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialsStarted >= halfOpenCalls)) {
+            rejected.increment();
+            return null;
+        }
+        boolean trial = state == State.HALF_OPEN;
+        if (trial) {
+            trialsStarted++;
+        }
+        return new Permit(trial);
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    /**
+     * Time until an open breaker lets trial calls through
+     */
+    public synchronized Duration getRetryAfter() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        long remaining = openDuration.toNanos() - (nanoTime.getAsLong() - openedAt);
+        return Duration.ofNanos(Math.max(remaining, 0));
+    }
+    
+    private synchronized void record(boolean trial, boolean failed) {
+        if (trial) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            if (failed) {
+                open();
+            } else if (++trialsSucceeded >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            // Started before the breaker opened; its outcome is stale
+            return;
+        }
+        
+        if (recorded == windowSize && window[windowPosition]) {
+            failures--;
+        }
+        window[windowPosition] = failed;
+        windowPosition = (windowPosition + 1) % windowSize;
+        recorded = Math.min(recorded + 1, windowSize);
+        if (failed) {
+            failures++;
+        }
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+    
+    private synchronized void releaseTrial(boolean trial) {
+        if (trial && state == State.HALF_OPEN) {
+            // Abandoned trial; let another call take its place
+            trialsStarted--;
+        }
+    }
+    
+    private void open() {
+        transition(State.OPEN);
+        openedAt = nanoTime.getAsLong();
+    }
+    
+    private void close() {
+        transition(State.CLOSED);
+        recorded = 0;
+        failures = 0;
+        windowPosition = 0;
+    }
+    
+    private void transition(State next) {
+        if (state != next) {
+            if (next == State.OPEN) {
+                log.warn("Inference circuit breaker {} -> {} ({} of the last {} calls failed or were slow)",
+                        state, next, failures, recorded);
+            } else {
+                log.info("Inference circuit breaker {} -> {}", state, next);
+            }
+            state = next;
+        }
+    }
+    
+    /**
+     * Permission for one call. Exactly one of the outcome methods takes effect.
+     */
+    public class Permit {
+        
+        private final boolean trial;
+        private final AtomicBoolean done = new AtomicBoolean();
+        
+        private Permit(boolean trial) {
+            this.trial = trial;
+        }
+        
+        /**
+         * The call returned a response; it still counts as failed if it was slow
+         */
+        public void onSuccess(long latencyNanos) {
+            if (done.compareAndSet(false, true)) {
+                record(trial, latencyNanos >= slowCallNanos);
+            }
+        }
+        
+        public void onFailure() {
+            if (done.compareAndSet(false, true)) {
+                record(trial, true);
+            }
+        }
+        
+        /**
+         * The call ended without saying anything about the service's health, e.g. it was
+         * cancelled or rejected as invalid input
+         */
+        public void release() {
+            if (done.compareAndSet(false, true)) {
+                releaseTrial(trial);
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.chamikara.spring_backend.detection;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Client-side load balancing across FastAPI replicas. Each call goes to the less loaded of
+ * two replicas picked at random in proportion to their weight (power of two choices), load
+ * being outstanding requests per unit of weight. Replicas are taken out of rotation while
+ * their health probe fails, and ejected for a while after {@code consecutive-failures}
+ * failed calls in a row; repeated ejections last longer. If every replica is out of
+ * rotation, all of them are tried rather than failing every call.
+ * <p>
+ * A call that could not connect is retried once on each other replica, since it never
+ * reached the failed one. A call still unanswered after the {@link HedgingPolicy} delay is
+ * hedged: sent once more to another replica, with whichever answers first taken and the
+ * other cancelled, so one slow replica does not set the tail latency. The hedge shares the
+ * circuit breaker and concurrency limit permits of its call; see {@link HedgingPolicy}.
+ */
+@Component
+@Slf4j
+public class InferenceEndpoints {
+    
+    private final List<Endpoint> endpoints;
+    private final HedgingPolicy hedging;
+    private final int ejectAfterFailures;
+    private final Duration baseEjection;
+    private final Duration maxEjection;
+    
+    public InferenceEndpoints(
+            MeterRegistry meterRegistry,
+            HedgingPolicy hedging,
+            @Value("${fastapi.service.url}") String url,
+            @Value("${fastapi.service.urls:}") List<String> urls,
+            @Value("${fastapi.service.weights:}") List<Integer> weights,
+            @Value("${fastapi.service.ejection.consecutive-failures:3}") int ejectAfterFailures,
+            @Value("${fastapi.service.ejection.base-duration:10s}") Duration baseEjection,
+            @Value("${fastapi.service.ejection.max-duration:5m}") Duration maxEjection) {
+        List<String> configured = urls.stream().map(String::trim).filter(u -> !u.isEmpty()).toList();
+        if (configured.isEmpty()) {
+            configured = List.of(url);
+        }
+        if (!weights.isEmpty() && weights.size() != configured.size()) {
+            throw new IllegalStateException("fastapi.service.weights must have one weight per entry of fastapi.service.urls");
+        }
+        
+        List<Endpoint> endpoints = new ArrayList<>(configured.size());
+        for (int i = 0; i < configured.size(); i++) {
+            int weight = weights.isEmpty() ? 1 : weights.get(i);
+            if (weight < 1) {
+                throw new IllegalStateException("Inference endpoint weights must be at least 1");
+            }
+            String endpointUrl = stripTrailingSlash(configured.get(i));
+            Endpoint endpoint = new Endpoint(endpointUrl, weight,
+                    Counter.builder("detection.endpoint.ejections").tag("endpoint", endpointUrl).register(meterRegistry));
+            Gauge.builder("detection.endpoint.outstanding", endpoint, Endpoint::getOutstanding)
+                    .tag("endpoint", endpointUrl).register(meterRegistry);
+            Gauge.builder("detection.endpoint.available", endpoint, e -> e.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .tag("endpoint", endpointUrl).register(meterRegistry);
+            endpoints.add(endpoint);
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.hedging = hedging;
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.baseEjection = baseEjection;
+        this.maxEjection = maxEjection;
+        log.info("Balancing FastAPI calls across {}", this.endpoints.stream()
+                .map(endpoint -> endpoint.getUrl() + " (weight " + endpoint.getWeight() + ")")
+                .toList());
+    }
+    
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+    
+    /**
+     * Send a request to a chosen replica and record its outcome. The call counts once
+     * towards the hedging budget, however many replicas it is retried on.
+     *
+     * @param request builds the request against a replica's base URL
+     * @param isFailure whether an error counts against the replica, as opposed to being
+     *                  caused by the request itself
+     */
+    public <T> Mono<T> call(Function<String, Mono<T>> request, Predicate<Throwable> isFailure) {
+        return Mono.defer(() -> {
+            hedging.onCall();
+            Set<Endpoint> tried = ConcurrentHashMap.newKeySet();
+            return Mono.defer(() -> hedged(request, isFailure, tried))
+                    .retryWhen(Retry.max(endpoints.size() - 1)
+                            .filter(e -> e.getCause() instanceof ConnectException && tried.size() < endpoints.size())
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        });
+    }
+    
+    /**
+     * Probe a replica's health endpoint and take it in or out of rotation. It is healthy
+     * only if it answers with a {@code status} of exactly {@code healthy}. Never fails.
+     *
+     * @param request the health request, given the replica's base URL
+     */
+    public Mono<Boolean> probe(Endpoint endpoint, Function<String, Mono<JsonNode>> request) {
+        return Mono.defer(() -> request.apply(endpoint.getUrl()))
+                .map(body -> "healthy".equals(body.path("status").asText(null)))
+                .defaultIfEmpty(false)
+                .onErrorResume(e -> {
+                    log.debug("Health check of FastAPI replica {} failed", endpoint.getUrl(), e);
+                    return Mono.just(false);
+                })
+                .doOnNext(healthy -> recordProbe(endpoint, healthy));
+    }
+    
+    private void recordProbe(Endpoint endpoint, boolean healthy) {
+        synchronized (endpoint) {
+            if (endpoint.probedHealthy != healthy) {
+                if (healthy) {
+                    log.info("Inference endpoint {} is healthy again", endpoint.getUrl());
+                } else {
+                    log.warn("Inference endpoint {} failed its health check, taking it out of rotation", endpoint.getUrl());
+                }
+            }
+            endpoint.probedHealthy = healthy;
+        }
+    }
+    
+    /**
+     * Make an attempt and, if it has not answered after the hedging delay, another one on a
+     * different replica. The first answer wins and the other attempt is cancelled. An error
+     * only ends the call once no other attempt is still running, so a hedge can still
+     * succeed after the attempt it duplicated failed.
+     */
+    private <T> Mono<T> hedged(Function<String, Mono<T>> request, Predicate<Throwable> isFailure, Set<Endpoint> tried) {
+        Duration delay = hedging.delay();
+        if (delay == null || endpoints.size() - tried.size() < 2) {
+            return attempt(request, isFailure, tried);
+        }
+        
+        AtomicInteger running = new AtomicInteger(1);
+        Mono<T> first = attempt(request, isFailure, tried)
+                .onErrorResume(e -> lastError(running, e));
+        Mono<T> hedge = Mono.delay(delay)
+                .then(Mono.defer(() -> {
+                    // The first attempt may have failed just now, which already ended the call
+                    if (!hedging.tryHedge() || running.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+                        return Mono.<T>never();
+                    }
+                    return attempt(request, isFailure, tried)
+                            .doOnSuccess(response -> hedging.onHedgeWon())
+                            .onErrorResume(e -> lastError(running, e));
+                }));
+        return Mono.firstWithSignal(first, hedge);
+    }
+    
+    private static <T> Mono<T> lastError(AtomicInteger running, Throwable e) {
+        return running.decrementAndGet() == 0 ? Mono.error(e) : Mono.never();
+    }
+    
+    private <T> Mono<T> attempt(Function<String, Mono<T>> request, Predicate<Throwable> isFailure, Set<Endpoint> tried) {
+        Endpoint endpoint = choose(tried);
+        tried.add(endpoint);
+        endpoint.outstanding.incrementAndGet();
+        AtomicBoolean done = new AtomicBoolean();
+        long start = System.nanoTime();
+        return Mono.defer(() -> request.apply(endpoint.getUrl()))
+                .doOnSuccess(response -> {
+                    if (done.compareAndSet(false, true)) {
+                        endpoint.outstanding.decrementAndGet();
+                        hedging.record(System.nanoTime() - start);
+                        succeeded(endpoint);
+                    }
+                })
+                .doOnError(e -> {
+                    if (done.compareAndSet(false, true)) {
+                        endpoint.outstanding.decrementAndGet();
+                        if (isFailure.test(e)) {
+                            failed(endpoint);
+                        }
+                    }
+                })
+                .doOnCancel(() -> {
+                    if (done.compareAndSet(false, true)) {
+                        endpoint.outstanding.decrementAndGet();
+                        hedging.recordCancelled(System.nanoTime() - start);
+                    }
+                });
+    }
+    
+    private Endpoint choose(Set<Endpoint> exclude) {
+        long now = System.nanoTime();
+        List<Endpoint> candidates = endpoints.stream()
+                .filter(endpoint -> !exclude.contains(endpoint) && endpoint.isAvailable(now))
+                .toList();
+        if (candidates.isEmpty()) {
+            // Every replica is out of rotation; trying one beats failing every call
+            candidates = endpoints.stream().filter(endpoint -> !exclude.contains(endpoint)).toList();
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        
+        Endpoint first = pick(candidates, null);
+        Endpoint second = pick(candidates, first);
+        return first.load() <= second.load() ? first : second;
+    }
+    
+    /**
+     * Pick a replica at random in proportion to its weight
+     */
+    private static Endpoint pick(List<Endpoint> candidates, Endpoint excluded) {
+        int total = 0;
+        for (Endpoint endpoint : candidates) {
+            total += endpoint == excluded ? 0 : endpoint.getWeight();
+        }
+        int target = ThreadLocalRandom.current().nextInt(total);
+        for (Endpoint endpoint : candidates) {
+            if (endpoint == excluded) {
+                continue;
+            }
+            target -= endpoint.getWeight();
+            if (target < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException("No inference endpoint to pick");
+    }
+    
+    private void succeeded(Endpoint endpoint) {
+        synchronized (endpoint) {
+            endpoint.consecutiveFailures = 0;
+            endpoint.ejections = 0;
+        }
+    }
+    
+    private void failed(Endpoint endpoint) {
+        synchronized (endpoint) {
+            if (++endpoint.consecutiveFailures < ejectAfterFailures || endpoint.isEjected(System.nanoTime())) {
+                return;
+            }
+            endpoint.consecutiveFailures = 0;
+            // Doubles with each ejection since the replica last succeeded
+            Duration duration = baseEjection.multipliedBy(1L << Math.min(endpoint.ejections, 20));
+            if (duration.compareTo(maxEjection) > 0) {
+                duration = maxEjection;
+            }
+            endpoint.ejections++;
+            endpoint.ejectedUntil = System.nanoTime() + duration.toNanos();
+            endpoint.ejectionCounter.increment();
+            log.warn("Ejecting inference endpoint {} for {} after {} consecutive failures",
+                    endpoint.getUrl(), duration, ejectAfterFailures);
+        }
+    }
+    
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+    
+    /**
+     * One FastAPI replica and its routing state
+     */
+    public static final class Endpoint {
+        
+        @Getter
+        private final String url;
+        @Getter
+        private final int weight;
+        private final Counter ejectionCounter;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        
+        // Guarded by this
+        private boolean probedHealthy = true;
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntil;
+        
+        private Endpoint(String url, int weight, Counter ejectionCounter) {
+            this.url = url;
+            this.weight = weight;
+            this.ejectionCounter = ejectionCounter;
+        }
+        
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+        
+        public synchronized boolean isHealthy() {
+            return probedHealthy;
+        }
+        
+        public synchronized boolean isEjected(long now) {
+            return ejections > 0 && now - ejectedUntil < 0;
+        }
+        
+        public synchronized boolean isAvailable(long now) {
+            return probedHealthy && !isEjected(now);
+        }
+        
+        private double load() {
+            return (double) outstanding.get() / weight;
+        }
+    }
+}
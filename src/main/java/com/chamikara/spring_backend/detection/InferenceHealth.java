@@ -0,0 +1,16 @@
+package com.chamikara.spring_backend.detection;
+
+import lombok.Value;
+
+/**
+ * Result of the latest background health probe of the inference service
+ */
+@Value
+public class InferenceHealth {
+    
+    public static final InferenceHealth UNKNOWN = new InferenceHealth(false, null, null);
+    
+    boolean healthy;
+    String checkedAt;
+    Long latencyMillis;
+}
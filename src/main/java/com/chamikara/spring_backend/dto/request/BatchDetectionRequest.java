@@ -0,0 +1,27 @@
+package com.chamikara.spring_backend.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Selects the inspections of a detection batch. Filters combine with AND; at least one
+ * is required.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchDetectionRequest {
+    
+    private String region;
+    
+    private List<Long> transformerIds;
+    
+    private String status;
+    
+    private Double sliderPercent;
+}
@@ -0,0 +1,26 @@
+package com.chamikara.spring_backend.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Options for running anomaly detection on a stored inspection. The images are
+ * resolved server-side, so none are sent.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionRequest {
+    
+    private Double sliderPercent;
+    
+    // Run full detection even if the maintenance image looks unchanged from the baseline
+    private Boolean force;
+    
+    public boolean isForced() {
+        return Boolean.TRUE.equals(force);
+    }
+}
@@ -1,5 +1,6 @@
 package com.chamikara.spring_backend.dto.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -10,6 +11,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@JsonIgnoreProperties({"annotatedImage"})
 public class InspectionRequest {
     
     @NotNull(message = "Transformer ID is required")
@@ -31,8 +33,6 @@ public class InspectionRequest {
     
     private String maintenanceWeather;
     
-    private String annotatedImage;
-    
     private String anomalies;
     
     private String progressStatus;
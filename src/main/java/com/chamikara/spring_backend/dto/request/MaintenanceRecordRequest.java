@@ -1,5 +1,6 @@
 package com.chamikara.spring_backend.dto.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -10,6 +11,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@JsonIgnoreProperties({"annotatedImage"})
 public class MaintenanceRecordRequest {
     
     @NotNull(message = "Transformer ID is required")
@@ -27,8 +29,6 @@ public class MaintenanceRecordRequest {
     
     private String notes;
     
-    private String annotatedImage;
-    
     private String anomalies;
     
     private String location;
@@ -1,5 +1,6 @@
 package com.chamikara.spring_backend.dto.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -13,13 +14,12 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@JsonIgnoreProperties({"annotatedImage"}) // annotated images are rendered server-side; still accepted from older clients
 public class SaveAnnotationsRequest {
     
     @NotNull(message = "Annotations list is required")
     @Valid
     private List<AnnotationRequest> annotations;
     
-    private String annotatedImage;
-    
     private String userId;
 }
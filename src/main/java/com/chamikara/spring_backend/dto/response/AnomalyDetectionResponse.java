@@ -14,7 +14,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class AnomalyDetectionResponse {
     
     private String requestId;
@@ -26,10 +26,15 @@ public class AnomalyDetectionResponse {
     private DetectionMetrics metrics;
     private OverlayImage overlayImage;
     
+    // Set when the maintenance image looked the same as the baseline, so FastAPI was not
+    // called; request detection with force to run it anyway
+    private Boolean unchanged;
+    private Integer perceptualDistance;
+    
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class DetectedAnomaly {
         private String id;
         private BoundingBox bbox;
@@ -0,0 +1,29 @@
+package com.chamikara.spring_backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionBatchResponse {
+    
+    private Long id;
+    private String region;
+    private List<Long> transformerIds;
+    private String inspectionStatus;
+    private Double sliderPercent;
+    private String status; // RUNNING until every job has completed or failed, then COMPLETED
+    private Integer total;
+    private Integer skipped;
+    private Long queued;
+    private Long running;
+    private Long completed;
+    private Long failed;
+    private String createdAt;
+}
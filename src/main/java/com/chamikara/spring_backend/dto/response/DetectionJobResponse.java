@@ -0,0 +1,23 @@
+package com.chamikara.spring_backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionJobResponse {
+    
+    private Long id;
+    private Long inspectionId;
+    private String status;
+    private Integer attempts;
+    private String error;
+    private String createdAt;
+    private String startedAt;
+    private String completedAt;
+    private AnomalyDetectionResponse result;
+}
@@ -19,10 +19,13 @@ public class InspectionResponse {
     private String inspector;
     private String notes;
     private String status;
-    private String maintenanceImage;
+    private String maintenanceImageHash;
+    private String maintenanceImageUrl;
     private String maintenanceUploadDate;
     private String maintenanceWeather;
-    private String annotatedImage;
+    private String annotatedImageUrl;
+    // Snapshot uploaded by older clients, if any, before annotated images were rendered
+    private String legacyAnnotatedImageUrl;
     private String anomalies;
     private String progressStatus;
 }
@@ -21,7 +21,8 @@ public class MaintenanceRecordResponse {
     private String readings;
     private String recommendedAction;
     private String notes;
-    private String annotatedImage;
+    private String annotatedImageHash;
+    private String annotatedImageUrl;
     private String anomalies;
     private String location;
     private String createdAt;
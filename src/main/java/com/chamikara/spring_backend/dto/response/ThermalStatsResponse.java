@@ -0,0 +1,67 @@
+package com.chamikara.spring_backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Intensity statistics of an inspection's maintenance image. Coordinates and sizes are in
+ * pixels of the original image; intensities are luminance from 0 to 255. Difference fields
+ * are null when the transformer has no baseline image.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class ThermalStatsResponse {
+    
+    private Long inspectionId;
+    private String maintenanceImageHash;
+    private String baselineImageHash;
+    private Integer width;
+    private Integer height;
+    // Size the image was analysed at, when downscaled to thermal.stats.max-dimension
+    private Integer analysedWidth;
+    private Integer analysedHeight;
+    private Integer columns;
+    private Integer rows;
+    private int[] histogram;
+    private Integer maxIntensity;
+    private Double meanIntensity;
+    private Double meanDifference;
+    private Point hottestPixel;
+    // Tiles with the highest maximum intensity, hottest first
+    private List<Tile> hotspots;
+    private List<Tile> tiles;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Tile {
+        private Integer row;
+        private Integer column;
+        private Integer x;
+        private Integer y;
+        private Integer width;
+        private Integer height;
+        private int[] histogram;
+        private Integer maxIntensity;
+        private Double meanIntensity;
+        private Point hottestPixel;
+        private Double meanDifference;
+        private Integer maxDifference;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Point {
+        private Integer x;
+        private Integer y;
+    }
+}
@@ -16,7 +16,8 @@ public class TransformerResponse {
     private String pole;
     private String region;
     private String type;
-    private String baselineImage;
+    private String baselineImageHash;
+    private String baselineImageUrl;
     private String baselineUploadDate;
     private String weather;
     private String location;
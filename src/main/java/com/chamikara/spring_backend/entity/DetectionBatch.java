@@ -0,0 +1,40 @@
+package com.chamikara.spring_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Anomaly detection over a set of inspections selected by region, transformer and/or
+ * inspection status. Each selected inspection becomes a {@link DetectionJob} carrying the
+ * batch id; progress is derived from the state of those jobs.
+ */
+@Entity
+@Table(name = "detection_batches")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionBatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String region;
+
+    private String inspectionStatus;
+
+    @Column(columnDefinition = "TEXT")
+    private String transformerIds; // comma-separated transformer ids
+
+    private Double sliderPercent;
+
+    @Column(nullable = false)
+    private Integer total; // inspections queued for detection
+
+    @Column(nullable = false)
+    private Integer skipped; // selected inspections without a baseline or maintenance image
+
+    @Column(nullable = false)
+    private String createdAt;
+}
@@ -0,0 +1,70 @@
+package com.chamikara.spring_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Queued anomaly detection for an inspection. The image pair is captured when the job is
+ * submitted, so a job runs against the images that were current at that time.
+ */
+@Entity
+@Table(name = "detection_jobs", indexes = {
+        @Index(name = "idx_detection_jobs_status", columnList = "status"),
+        @Index(name = "idx_detection_jobs_batch", columnList = "batch_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetectionJob {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long inspectionId;
+
+    private Long batchId; // null for individually submitted jobs
+
+    @Column(nullable = false)
+    private String transformerId; // transformer number sent to FastAPI
+
+    @Column(length = 64, nullable = false)
+    private String baselineImageHash;
+
+    @Column(length = 64, nullable = false)
+    private String maintenanceImageHash;
+
+    private Double sliderPercent;
+
+    @Column(name = "force_detection")
+    private Boolean force; // skip the unchanged-image prefilter
+
+    private String region; // transformer region, the fair-share key when scheduled
+
+    @Column(nullable = false, length = 16)
+    @Builder.Default
+    private String status = QUEUED; // QUEUED, RUNNING, COMPLETED, FAILED
+
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(columnDefinition = "TEXT")
+    private String result; // AnomalyDetectionResponse as JSON
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(nullable = false)
+    private String createdAt;
+
+    private String startedAt;
+
+    private String completedAt;
+}
@@ -0,0 +1,27 @@
+package com.chamikara.spring_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Perceptual hash of a stored image. Images are content-addressed, so the hash of an
+ * image never changes and is computed once.
+ */
+@Entity
+@Table(name = "image_fingerprints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImageFingerprint {
+
+    @Id
+    @Column(length = 64)
+    private String imageHash;
+
+    @Column(nullable = false)
+    private Long differenceHash;
+
+    @Column(nullable = false)
+    private String createdAt;
+}
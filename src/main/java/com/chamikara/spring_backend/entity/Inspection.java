@@ -35,15 +35,17 @@ public class Inspection {
     @Builder.Default
     private String status = "Pending";
 
-    @Column(columnDefinition = "TEXT")
-    private String maintenanceImage;
+    @Column(length = 64)
+    private String maintenanceImageHash; // SHA-256 reference into the image store
 
     private String maintenanceUploadDate;
 
     private String maintenanceWeather;
 
-    @Column(columnDefinition = "TEXT")
-    private String annotatedImage;
+    // Annotated image uploaded before they were rendered on the server. Kept as it was
+    // migrated, and never written by the application
+    @Column(name = "annotated_image_hash", length = 64)
+    private String legacyAnnotatedImageHash;
 
     @Column(columnDefinition = "TEXT")
     private String anomalies; // Stored as JSON string
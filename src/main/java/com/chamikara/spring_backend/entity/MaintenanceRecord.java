@@ -43,8 +43,8 @@ public class MaintenanceRecord {
     @Column(columnDefinition = "TEXT")
     private String notes;
 
-    @Column(columnDefinition = "TEXT")
-    private String annotatedImage; // snapshot of annotated image
+    @Column(length = 64)
+    private String annotatedImageHash; // snapshot of annotated image (image store reference)
 
     @Column(columnDefinition = "TEXT")
     private String anomalies; // JSON array of anomaly objects
@@ -27,8 +27,8 @@ public class Transformer {
 
     private String type;
 
-    @Column(columnDefinition = "TEXT")
-    private String baselineImage;
+    @Column(length = 64)
+    private String baselineImageHash; // SHA-256 reference into the image store
 
     private String baselineUploadDate;
 
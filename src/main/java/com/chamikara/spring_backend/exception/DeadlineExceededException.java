@@ -0,0 +1,12 @@
+package com.chamikara.spring_backend.exception;
+
+/**
+ * The caller's deadline passed before its request could be answered, so work on it was
+ * abandoned
+ */
+public class DeadlineExceededException extends RuntimeException {
+    
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -2,6 +2,7 @@ package com.chamikara.spring_backend.exception;
 
 import com.chamikara.spring_backend.dto.response.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -11,10 +12,12 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.reactive.function.client.WebClientException;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 @RestControllerAdvice
 @Slf4j
@@ -82,6 +85,14 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error("Invalid request body format"));
     }
     
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ApiResponse<Object>> handleMaxUploadSizeExceeded(
+            MaxUploadSizeExceededException ex) {
+        log.warn("Upload too large: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(ApiResponse.error("Uploaded file exceeds the maximum allowed size"));
+    }
+    
     @ExceptionHandler(WebClientException.class)
     public ResponseEntity<ApiResponse<Object>> handleWebClientException(
             WebClientException ex) {
@@ -90,6 +101,35 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error("External service is unavailable. Please try again later."));
     }
     
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiResponse<Object>> handleServiceUnavailable(
+            ServiceUnavailableException ex) {
+        log.warn("External service call rejected: {}", ex.getMessage());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE);
+        if (ex.getRetryAfter() != null && !ex.getRetryAfter().isZero()) {
+            // Whole seconds, rounded up so clients do not retry before the service is tried again
+            long seconds = (ex.getRetryAfter().toMillis() + 999) / 1000;
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        }
+        return response.body(ApiResponse.error(ex.getMessage()));
+    }
+    
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<ApiResponse<Object>> handleTimeout(
+            TimeoutException ex) {
+        log.error("External service call timed out: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(ApiResponse.error("External service did not respond in time. Please try again later."));
+    }
+    
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ApiResponse<Object>> handleDeadlineExceeded(
+            DeadlineExceededException ex) {
+        log.warn("Request deadline exceeded: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+    
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ApiResponse<Object>> handleIllegalArgument(
             IllegalArgumentException ex) {
@@ -0,0 +1,19 @@
+package com.chamikara.spring_backend.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * A downstream service is known to be unavailable or saturated, so the call was not made
+ */
+@Getter
+public class ServiceUnavailableException extends RuntimeException {
+    
+    private final Duration retryAfter;
+    
+    public ServiceUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
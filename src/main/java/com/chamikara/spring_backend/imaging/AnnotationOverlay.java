@@ -0,0 +1,106 @@
+package com.chamikara.spring_backend.imaging;
+
+import com.chamikara.spring_backend.entity.Annotation;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Draws annotation boxes onto an image
+ */
+public final class AnnotationOverlay {
+    
+    /**
+     * Bump when the drawing style changes so cached renders are regenerated
+     */
+    public static final int STYLE_VERSION = 1;
+    
+    private static final Color HIGH = new Color(230, 30, 30);
+    private static final Color MEDIUM = new Color(255, 140, 0);
+    private static final Color LOW = new Color(250, 210, 0);
+    private static final Color OTHER = new Color(0, 200, 230);
+    
+    private AnnotationOverlay() {
+    }
+    
+    /**
+     * Render the annotations over a copy of the base image. Coordinates are in base image pixels.
+     */
+    public static BufferedImage render(BufferedImage base, List<Annotation> annotations) {
+        BufferedImage canvas = new BufferedImage(base.getWidth(), base.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = canvas.createGraphics();
+        try {
+            g.drawImage(base, 0, 0, null);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            
+            int longest = Math.max(base.getWidth(), base.getHeight());
+            float strokeWidth = Math.max(2f, longest / 400f);
+            g.setStroke(new BasicStroke(strokeWidth));
+            g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(12, longest / 60)));
+            FontMetrics metrics = g.getFontMetrics();
+            
+            for (Annotation annotation : annotations) {
+                int x = (int) Math.round(annotation.getX());
+                int y = (int) Math.round(annotation.getY());
+                int w = (int) Math.round(annotation.getW());
+                int h = (int) Math.round(annotation.getH());
+                Color color = colorFor(annotation.getSeverity());
+                
+                g.setColor(color);
+                g.drawRect(x, y, w, h);
+                
+                String label = label(annotation);
+                if (!label.isEmpty()) {
+                    int labelWidth = metrics.stringWidth(label) + 6;
+                    int labelHeight = metrics.getHeight();
+                    int labelY = y - labelHeight >= 0 ? y - labelHeight : y;
+                    g.fillRect(x, labelY, labelWidth, labelHeight);
+                    g.setColor(Color.BLACK);
+                    g.drawString(label, x + 3, labelY + metrics.getAscent());
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return canvas;
+    }
+    
+    private static String label(Annotation annotation) {
+        StringBuilder label = new StringBuilder();
+        if (annotation.getClassification() != null) {
+            label.append(annotation.getClassification());
+        }
+        if (annotation.getConfidence() != null) {
+            if (label.length() > 0) {
+                label.append(' ');
+            }
+            label.append(Math.round(annotation.getConfidence() * 100)).append('%');
+        }
+        return label.toString();
+    }
+    
+    private static Color colorFor(String severity) {
+        if (severity == null) {
+            return OTHER;
+        }
+        String value = severity.toLowerCase(Locale.ROOT);
+        if (value.contains("potential") || value.contains("medium")) {
+            return MEDIUM;
+        }
+        if (value.contains("high") || value.contains("fault") || value.contains("critical") || value.contains("urgent")) {
+            return HIGH;
+        }
+        if (value.contains("low")) {
+            return LOW;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,116 @@
+package com.chamikara.spring_backend.imaging;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Decodes and encodes rasters with ImageIO
+ */
+public final class ImageCodec {
+    
+    private ImageCodec() {
+    }
+    
+    /**
+     * Decode an image, returning null when no ImageIO reader supports the format
+     */
+    public static BufferedImage decode(InputStream in) throws IOException {
+        return ImageIO.read(in);
+    }
+    
+    /**
+     * Decode an image that is about to be downscaled to fit {@code maxDimension}. Rows and
+     * columns are skipped while reading, keeping the longest side at least twice
+     * {@code maxDimension} for the final smoothing steps, so a large image is never held at
+     * full resolution. Metadata is not read.
+     *
+     * @return the decoded raster with the full-resolution size, or null when no ImageIO
+     *         reader supports the format
+     */
+    public static Decoded decodeForFit(InputStream in, int maxDimension) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = reader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.max(width, height) / (2 * maxDimension));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return new Decoded(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Read an image's size from its header without decoding it
+     *
+     * @return the size, or null when no ImageIO reader supports the format
+     */
+    public static Dimension dimensions(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = reader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    private static ImageReader reader(ImageInputStream input) {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        return readers.hasNext() ? readers.next() : null;
+    }
+    
+    public static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(ImageScaling.toRgb(image), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+    
+    public static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+    
+    /**
+     * A decoded, possibly subsampled, raster and the size of the image it was read from
+     */
+    public record Decoded(BufferedImage image, int sourceWidth, int sourceHeight) {
+    }
+}
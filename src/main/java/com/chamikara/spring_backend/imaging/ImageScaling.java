@@ -0,0 +1,74 @@
+package com.chamikara.spring_backend.imaging;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Downscaling helpers for generated image variants
+ */
+public final class ImageScaling {
+    
+    private ImageScaling() {
+    }
+    
+    /**
+     * Scale factor that fits an image within a square of {@code maxDimension}, never upscaling
+     */
+    public static double fitScale(int width, int height, int maxDimension) {
+        int longest = Math.max(width, height);
+        return longest > maxDimension ? (double) maxDimension / longest : 1.0;
+    }
+    
+    /**
+     * Downscale to fit within {@code maxDimension}, halving repeatedly before the final
+     * bilinear step so large reductions keep detail instead of aliasing
+     */
+    public static BufferedImage fit(BufferedImage source, int maxDimension) {
+        double scale = fitScale(source.getWidth(), source.getHeight(), maxDimension);
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        
+        BufferedImage current = toRgb(source);
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight) {
+            current = resize(current, targetWidth, targetHeight);
+        }
+        return current;
+    }
+    
+    /**
+     * Bilinear resize to exactly {@code width} x {@code height}, ignoring aspect ratio
+     */
+    public static BufferedImage scaleTo(BufferedImage source, int width, int height) {
+        if (source.getWidth() == width && source.getHeight() == height) {
+            return toRgb(source);
+        }
+        return resize(source, width, height);
+    }
+    
+    /**
+     * Copy into a plain RGB raster (drops alpha and indexed palettes)
+     */
+    public static BufferedImage toRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+            return source;
+        }
+        return resize(source, source.getWidth(), source.getHeight());
+    }
+    
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+}
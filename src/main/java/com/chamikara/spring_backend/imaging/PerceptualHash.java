@@ -0,0 +1,62 @@
+package com.chamikara.spring_backend.imaging;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash (dHash) of an image: 64 bits telling whether brightness rises or falls
+ * between horizontally adjacent cells of a 9x8 grid over the image. Similar-looking images
+ * have hashes a few bits apart whatever their size, encoding or overall brightness.
+ */
+public final class PerceptualHash {
+    
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+    
+    private PerceptualHash() {
+    }
+    
+    /**
+     * Hash an image. Each grid cell is the mean luminance of the pixels it covers, so
+     * the result does not depend on which pixels a resize would happen to sample.
+     */
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] cells = new double[COLUMNS * ROWS];
+        int[] counts = new int[COLUMNS * ROWS];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = y * ROWS / height;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int cell = cellRow * COLUMNS + x * COLUMNS / width;
+                cells[cell] += 0.299 * ((rgb >> 16) & 0xff) + 0.587 * ((rgb >> 8) & 0xff) + 0.114 * (rgb & 0xff);
+                counts[cell]++;
+            }
+        }
+        
+        long hash = 0;
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS - 1; x++) {
+                int cell = y * COLUMNS + x;
+                hash <<= 1;
+                if (mean(cells, counts, cell) < mean(cells, counts, cell + 1)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+    
+    /**
+     * Number of differing bits between two hashes, 0 for identical-looking images
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+    
+    private static double mean(double[] cells, int[] counts, int cell) {
+        return counts[cell] == 0 ? 0 : cells[cell] / counts[cell];
+    }
+}
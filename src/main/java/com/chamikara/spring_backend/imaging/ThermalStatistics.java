@@ -0,0 +1,280 @@
+package com.chamikara.spring_backend.imaging;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Per-tile intensity statistics of a thermal image, optionally against a baseline image of
+ * the same size. Intensity is the luminance (0-255) of each pixel, which rises with
+ * temperature in the usual thermal palettes. The image is split into square tiles that are
+ * processed in parallel on a fork-join pool; every tile writes only its own slots of
+ * shared primitive arrays, and no memory is allocated per pixel.
+ */
+public final class ThermalStatistics {
+    
+    // Tiles processed by one fork-join task without splitting further
+    private static final int TILES_PER_TASK = 4;
+    
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int columns;
+    private final int rows;
+    private final int bins;
+    private final boolean hasBaseline;
+    
+    // Indexed by tile (row * columns + column), histograms by tile * bins + bin
+    private final int[] histograms;
+    private final int[] maxima;
+    private final int[] maximumPositions;
+    private final long[] sums;
+    private final long[] differenceSums;
+    private final int[] maxDifferences;
+    
+    private ThermalStatistics(int width, int height, int tileSize, int bins, boolean hasBaseline) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.columns = (width + tileSize - 1) / tileSize;
+        this.rows = (height + tileSize - 1) / tileSize;
+        this.bins = bins;
+        this.hasBaseline = hasBaseline;
+        int tiles = columns * rows;
+        this.histograms = new int[tiles * bins];
+        this.maxima = new int[tiles];
+        this.maximumPositions = new int[tiles];
+        this.sums = new long[tiles];
+        this.differenceSums = hasBaseline ? new long[tiles] : null;
+        this.maxDifferences = hasBaseline ? new int[tiles] : null;
+    }
+    
+    /**
+     * Compute the statistics of an image
+     *
+     * @param baseline image of the same size to difference against, or null
+     * @param bins number of histogram bins over the 0-255 intensity range (1 to 256)
+     */
+    public static ThermalStatistics compute(BufferedImage image, BufferedImage baseline, int tileSize, int bins,
+                                            ForkJoinPool pool) {
+        if (baseline != null && (baseline.getWidth() != image.getWidth() || baseline.getHeight() != image.getHeight())) {
+            throw new IllegalArgumentException("Baseline must be the same size as the image");
+        }
+        if (bins < 1 || bins > 256) {
+            throw new IllegalArgumentException("Histogram bins must be between 1 and 256");
+        }
+        ThermalStatistics statistics = new ThermalStatistics(image.getWidth(), image.getHeight(), tileSize, bins,
+                baseline != null);
+        pool.invoke(statistics.new TileTask(image, baseline, 0, statistics.getTileCount()));
+        return statistics;
+    }
+    
+    public int getWidth() {
+        return width;
+    }
+    
+    public int getHeight() {
+        return height;
+    }
+    
+    public int getTileSize() {
+        return tileSize;
+    }
+    
+    public int getColumns() {
+        return columns;
+    }
+    
+    public int getRows() {
+        return rows;
+    }
+    
+    public int getTileCount() {
+        return columns * rows;
+    }
+    
+    public int getBins() {
+        return bins;
+    }
+    
+    public boolean hasBaseline() {
+        return hasBaseline;
+    }
+    
+    public int tileX(int tile) {
+        return (tile % columns) * tileSize;
+    }
+    
+    public int tileY(int tile) {
+        return (tile / columns) * tileSize;
+    }
+    
+    public int tileWidth(int tile) {
+        return Math.min(tileSize, width - tileX(tile));
+    }
+    
+    public int tileHeight(int tile) {
+        return Math.min(tileSize, height - tileY(tile));
+    }
+    
+    public int[] histogram(int tile) {
+        int[] histogram = new int[bins];
+        System.arraycopy(histograms, tile * bins, histogram, 0, bins);
+        return histogram;
+    }
+    
+    /**
+     * Histogram of the whole image, the sum of the tile histograms
+     */
+    public int[] histogram() {
+        int[] histogram = new int[bins];
+        for (int i = 0; i < histograms.length; i++) {
+            histogram[i % bins] += histograms[i];
+        }
+        return histogram;
+    }
+    
+    public int max(int tile) {
+        return maxima[tile];
+    }
+    
+    /**
+     * X coordinate of the tile's hottest pixel (the first, if several share the maximum)
+     */
+    public int maxX(int tile) {
+        return maximumPositions[tile] % width;
+    }
+    
+    public int maxY(int tile) {
+        return maximumPositions[tile] / width;
+    }
+    
+    public double mean(int tile) {
+        return (double) sums[tile] / pixels(tile);
+    }
+    
+    /**
+     * The tile holding the image's hottest pixel
+     */
+    public int hottestTile() {
+        int hottest = 0;
+        for (int tile = 1; tile < maxima.length; tile++) {
+            if (maxima[tile] > maxima[hottest]) {
+                hottest = tile;
+            }
+        }
+        return hottest;
+    }
+    
+    public double mean() {
+        long sum = 0;
+        for (long tileSum : sums) {
+            sum += tileSum;
+        }
+        return (double) sum / ((long) width * height);
+    }
+    
+    /**
+     * Mean absolute intensity difference to the baseline within a tile
+     */
+    public double meanDifference(int tile) {
+        return (double) differenceSums[tile] / pixels(tile);
+    }
+    
+    public int maxDifference(int tile) {
+        return maxDifferences[tile];
+    }
+    
+    public double meanDifference() {
+        long sum = 0;
+        for (long tileSum : differenceSums) {
+            sum += tileSum;
+        }
+        return (double) sum / ((long) width * height);
+    }
+    
+    private long pixels(int tile) {
+        return (long) tileWidth(tile) * tileHeight(tile);
+    }
+    
+    private static int intensity(int rgb) {
+        return (77 * ((rgb >> 16) & 0xff) + 150 * ((rgb >> 8) & 0xff) + 29 * (rgb & 0xff)) >> 8;
+    }
+    
+    /**
+     * Computes a range of tiles, splitting it in half until it is small enough
+     */
+    private final class TileTask extends RecursiveAction {
+        
+        private final BufferedImage image;
+        private final BufferedImage baseline;
+        private final int from;
+        private final int to;
+        
+        TileTask(BufferedImage image, BufferedImage baseline, int from, int to) {
+            this.image = image;
+            this.baseline = baseline;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= TILES_PER_TASK) {
+                // One row of pixels at a time, reused for every tile of this task
+                int[] row = new int[tileSize];
+                int[] baselineRow = baseline != null ? new int[tileSize] : null;
+                for (int tile = from; tile < to; tile++) {
+                    computeTile(tile, row, baselineRow);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TileTask(image, baseline, from, middle), new TileTask(image, baseline, middle, to));
+        }
+        
+        private void computeTile(int tile, int[] row, int[] baselineRow) {
+            int x0 = tileX(tile);
+            int y0 = tileY(tile);
+            int tileWidth = tileWidth(tile);
+            int tileHeight = tileHeight(tile);
+            int histogramOffset = tile * bins;
+            int max = -1;
+            int maxPosition = 0;
+            long sum = 0;
+            long differenceSum = 0;
+            int maxDifference = 0;
+            
+            for (int y = y0; y < y0 + tileHeight; y++) {
+                image.getRGB(x0, y, tileWidth, 1, row, 0, tileWidth);
+                if (baselineRow != null) {
+                    baseline.getRGB(x0, y, tileWidth, 1, baselineRow, 0, tileWidth);
+                }
+                for (int i = 0; i < tileWidth; i++) {
+                    int value = intensity(row[i]);
+                    histograms[histogramOffset + value * bins / 256]++;
+                    sum += value;
+                    if (value > max) {
+                        max = value;
+                        maxPosition = y * width + x0 + i;
+                    }
+                    if (baselineRow != null) {
+                        int difference = Math.abs(value - intensity(baselineRow[i]));
+                        differenceSum += difference;
+                        if (difference > maxDifference) {
+                            maxDifference = difference;
+                        }
+                    }
+                }
+            }
+            
+            maxima[tile] = max;
+            maximumPositions[tile] = maxPosition;
+            sums[tile] = sum;
+            if (baselineRow != null) {
+                differenceSums[tile] = differenceSum;
+                maxDifferences[tile] = maxDifference;
+            }
+        }
+    }
+}
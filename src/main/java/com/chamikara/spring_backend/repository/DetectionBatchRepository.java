@@ -0,0 +1,9 @@
+package com.chamikara.spring_backend.repository;
+
+import com.chamikara.spring_backend.entity.DetectionBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DetectionBatchRepository extends JpaRepository<DetectionBatch, Long> {
+}
@@ -0,0 +1,38 @@
+package com.chamikara.spring_backend.repository;
+
+import com.chamikara.spring_backend.entity.DetectionJob;
+import com.chamikara.spring_backend.repository.projection.StatusCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface DetectionJobRepository extends JpaRepository<DetectionJob, Long> {
+    
+    List<DetectionJob> findByStatusOrderByIdAsc(String status);
+    
+    List<DetectionJob> findByBatchIdOrderByIdAsc(Long batchId);
+    
+    @Query("SELECT j.status AS status, COUNT(j) AS count FROM DetectionJob j WHERE j.batchId = :batchId GROUP BY j.status")
+    List<StatusCount> countByBatchIdGroupByStatus(@Param("batchId") Long batchId);
+    
+    /**
+     * Atomically move a queued job to running. Returns 0 if another worker got there first
+     * or the job is no longer queued.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE DetectionJob j SET j.status = 'RUNNING', j.startedAt = :startedAt, j.attempts = j.attempts + 1 " +
+            "WHERE j.id = :id AND j.status = 'QUEUED'")
+    int claim(@Param("id") Long id, @Param("startedAt") String startedAt);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE DetectionJob j SET j.status = 'QUEUED' WHERE j.status = 'RUNNING'")
+    int requeueRunning();
+}
@@ -0,0 +1,9 @@
+package com.chamikara.spring_backend.repository;
+
+import com.chamikara.spring_backend.entity.ImageFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImageFingerprintRepository extends JpaRepository<ImageFingerprint, String> {
+}
@@ -1,11 +1,14 @@
 package com.chamikara.spring_backend.repository;
 
 import com.chamikara.spring_backend.entity.Inspection;
+import com.chamikara.spring_backend.repository.projection.InspectionImages;
+import com.chamikara.spring_backend.repository.projection.InspectionSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,4 +23,28 @@ public interface InspectionRepository extends JpaRepository<Inspection, Long> {
     
     @Query("SELECT i FROM Inspection i JOIN FETCH i.transformer")
     List<Inspection> findAllWithTransformer();
+    
+    @Query("SELECT i.id AS id, t.id AS transformerId, t.number AS transformerNumber, i.date AS date, " +
+            "i.inspectedDate AS inspectedDate, i.inspector AS inspector, i.notes AS notes, i.status AS status, " +
+            "i.maintenanceImageHash AS maintenanceImageHash, i.maintenanceUploadDate AS maintenanceUploadDate, " +
+            "i.maintenanceWeather AS maintenanceWeather, i.legacyAnnotatedImageHash AS legacyAnnotatedImageHash, " +
+            "i.anomalies AS anomalies, i.progressStatus AS progressStatus " +
+            "FROM Inspection i JOIN i.transformer t")
+    List<InspectionSummary> findAllSummaries();
+    
+    @Query("SELECT i.id AS id, t.id AS transformerId, t.number AS transformerNumber, i.date AS date, " +
+            "i.inspectedDate AS inspectedDate, i.inspector AS inspector, i.notes AS notes, i.status AS status, " +
+            "i.maintenanceImageHash AS maintenanceImageHash, i.maintenanceUploadDate AS maintenanceUploadDate, " +
+            "i.maintenanceWeather AS maintenanceWeather, i.legacyAnnotatedImageHash AS legacyAnnotatedImageHash, " +
+            "i.anomalies AS anomalies, i.progressStatus AS progressStatus " +
+            "FROM Inspection i JOIN i.transformer t WHERE t.id = :transformerId ORDER BY i.date DESC")
+    List<InspectionSummary> findSummariesByTransformerId(@Param("transformerId") Long transformerId);
+    
+    @Query("SELECT i.id AS id, t.id AS transformerId, t.number AS transformerNumber, t.region AS region, " +
+            "t.baselineImageHash AS baselineImageHash, i.maintenanceImageHash AS maintenanceImageHash " +
+            "FROM Inspection i JOIN i.transformer t " +
+            "WHERE (:region IS NULL OR t.region = :region) AND (:status IS NULL OR i.status = :status) " +
+            "AND (:transformerIds IS NULL OR t.id IN :transformerIds) ORDER BY i.id")
+    List<InspectionImages> findImages(@Param("region") String region, @Param("status") String status,
+                                      @Param("transformerIds") Collection<Long> transformerIds);
 }
@@ -1,6 +1,7 @@
 package com.chamikara.spring_backend.repository;
 
 import com.chamikara.spring_backend.entity.MaintenanceRecord;
+import com.chamikara.spring_backend.repository.projection.MaintenanceRecordSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -20,4 +21,21 @@ public interface MaintenanceRecordRepository extends JpaRepository<MaintenanceRe
     
     @Query("SELECT mr FROM MaintenanceRecord mr JOIN FETCH mr.transformer")
     List<MaintenanceRecord> findAllWithTransformer();
+    
+    @Query("SELECT mr.id AS id, t.id AS transformerId, t.number AS transformerNumber, ins.id AS inspectionId, " +
+            "mr.recordTimestamp AS recordTimestamp, mr.engineerName AS engineerName, mr.status AS status, " +
+            "mr.readings AS readings, mr.recommendedAction AS recommendedAction, mr.notes AS notes, " +
+            "mr.annotatedImageHash AS annotatedImageHash, mr.anomalies AS anomalies, mr.location AS location, " +
+            "mr.createdAt AS createdAt, mr.updatedAt AS updatedAt " +
+            "FROM MaintenanceRecord mr JOIN mr.transformer t LEFT JOIN mr.inspection ins")
+    List<MaintenanceRecordSummary> findAllSummaries();
+    
+    @Query("SELECT mr.id AS id, t.id AS transformerId, t.number AS transformerNumber, ins.id AS inspectionId, " +
+            "mr.recordTimestamp AS recordTimestamp, mr.engineerName AS engineerName, mr.status AS status, " +
+            "mr.readings AS readings, mr.recommendedAction AS recommendedAction, mr.notes AS notes, " +
+            "mr.annotatedImageHash AS annotatedImageHash, mr.anomalies AS anomalies, mr.location AS location, " +
+            "mr.createdAt AS createdAt, mr.updatedAt AS updatedAt " +
+            "FROM MaintenanceRecord mr JOIN mr.transformer t LEFT JOIN mr.inspection ins " +
+            "WHERE t.id = :transformerId ORDER BY mr.recordTimestamp DESC")
+    List<MaintenanceRecordSummary> findSummariesByTransformerId(@Param("transformerId") Long transformerId);
 }
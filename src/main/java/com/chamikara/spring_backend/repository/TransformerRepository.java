@@ -1,9 +1,12 @@
 package com.chamikara.spring_backend.repository;
 
 import com.chamikara.spring_backend.entity.Transformer;
+import com.chamikara.spring_backend.repository.projection.TransformerSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +15,12 @@ public interface TransformerRepository extends JpaRepository<Transformer, Long>
     Optional<Transformer> findByNumber(String number);
     
     boolean existsByNumber(String number);
+    
+    @Query("SELECT t.id AS id, t.number AS number, t.pole AS pole, t.region AS region, t.type AS type, " +
+            "t.baselineImageHash AS baselineImageHash, t.baselineUploadDate AS baselineUploadDate, " +
+            "t.weather AS weather, t.location AS location, COUNT(i.id) AS inspectionCount " +
+            "FROM Transformer t LEFT JOIN t.inspections i " +
+            "GROUP BY t.id, t.number, t.pole, t.region, t.type, t.baselineImageHash, t.baselineUploadDate, " +
+            "t.weather, t.location")
+    List<TransformerSummary> findAllSummaries();
 }
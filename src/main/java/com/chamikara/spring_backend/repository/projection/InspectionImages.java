@@ -0,0 +1,19 @@
+package com.chamikara.spring_backend.repository.projection;
+
+/**
+ * Image references of an inspection and its transformer's baseline
+ */
+public interface InspectionImages {
+    
+    Long getId();
+    
+    Long getTransformerId();
+    
+    String getTransformerNumber();
+    
+    String getRegion();
+    
+    String getBaselineImageHash();
+    
+    String getMaintenanceImageHash();
+}
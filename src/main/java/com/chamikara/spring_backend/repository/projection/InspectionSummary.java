@@ -0,0 +1,35 @@
+package com.chamikara.spring_backend.repository.projection;
+
+/**
+ * Inspection row without image data, flattened with its transformer reference
+ */
+public interface InspectionSummary {
+    
+    Long getId();
+    
+    Long getTransformerId();
+    
+    String getTransformerNumber();
+    
+    String getDate();
+    
+    String getInspectedDate();
+    
+    String getInspector();
+    
+    String getNotes();
+    
+    String getStatus();
+    
+    String getMaintenanceImageHash();
+    
+    String getMaintenanceUploadDate();
+    
+    String getMaintenanceWeather();
+    
+    String getLegacyAnnotatedImageHash();
+    
+    String getAnomalies();
+    
+    String getProgressStatus();
+}
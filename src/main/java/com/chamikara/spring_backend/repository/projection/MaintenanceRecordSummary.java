@@ -0,0 +1,37 @@
+package com.chamikara.spring_backend.repository.projection;
+
+/**
+ * Maintenance record row without image data, flattened with its transformer and inspection references
+ */
+public interface MaintenanceRecordSummary {
+    
+    Long getId();
+    
+    Long getTransformerId();
+    
+    String getTransformerNumber();
+    
+    Long getInspectionId();
+    
+    String getRecordTimestamp();
+    
+    String getEngineerName();
+    
+    String getStatus();
+    
+    String getReadings();
+    
+    String getRecommendedAction();
+    
+    String getNotes();
+    
+    String getAnnotatedImageHash();
+    
+    String getAnomalies();
+    
+    String getLocation();
+    
+    String getCreatedAt();
+    
+    String getUpdatedAt();
+}
@@ -0,0 +1,11 @@
+package com.chamikara.spring_backend.repository.projection;
+
+/**
+ * Number of rows in one status
+ */
+public interface StatusCount {
+    
+    String getStatus();
+    
+    long getCount();
+}
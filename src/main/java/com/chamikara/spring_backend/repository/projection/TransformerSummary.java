@@ -0,0 +1,27 @@
+package com.chamikara.spring_backend.repository.projection;
+
+/**
+ * Transformer row without image data, with its inspection count aggregated in the query
+ */
+public interface TransformerSummary {
+    
+    Long getId();
+    
+    String getNumber();
+    
+    String getPole();
+    
+    String getRegion();
+    
+    String getType();
+    
+    String getBaselineImageHash();
+    
+    String getBaselineUploadDate();
+    
+    String getWeather();
+    
+    String getLocation();
+    
+    Long getInspectionCount();
+}
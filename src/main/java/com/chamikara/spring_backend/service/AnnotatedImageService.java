@@ -0,0 +1,189 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.entity.Annotation;
+import com.chamikara.spring_backend.exception.ResourceNotFoundException;
+import com.chamikara.spring_backend.exception.ServiceException;
+import com.chamikara.spring_backend.exception.ServiceUnavailableException;
+import com.chamikara.spring_backend.imaging.AnnotationOverlay;
+import com.chamikara.spring_backend.imaging.ImageCodec;
+import com.chamikara.spring_backend.repository.AnnotationRepository;
+import com.chamikara.spring_backend.storage.ImageStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders annotated images on demand by compositing the stored annotation boxes
+ * onto the maintenance image. Renders are cached in the image store keyed by the
+ * maintenance image hash and an annotation version fingerprint, so an image is
+ * only re-rendered after its annotations change.
+ * <p>
+ * Rendering decodes the full-resolution image, so it runs on a pool of
+ * {@code annotations.overlay.threads} with a bounded queue, and concurrent requests for
+ * the same render wait on one another. The caller waits outside any transaction.
+ * <p>
+ * Renders of earlier annotation versions are kept: maintenance records may reference them,
+ * and clients may still hold their immutable URLs.
+ */
+@Service
+@Slf4j
+public class AnnotatedImageService {
+    
+    private static final String VARIANT_PREFIX = "annotated-";
+    
+    private final InspectionService inspectionService;
+    private final AnnotationRepository annotationRepository;
+    private final ImageStore imageStore;
+    private final float jpegQuality;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    
+    public AnnotatedImageService(
+            InspectionService inspectionService,
+            AnnotationRepository annotationRepository,
+            ImageStore imageStore,
+            @Value("${annotations.overlay.jpeg-quality:0.9}") float jpegQuality,
+            @Value("${annotations.overlay.threads:2}") int threads,
+            @Value("${annotations.overlay.queue-capacity:100}") int queueCapacity) {
+        this.inspectionService = inspectionService;
+        this.annotationRepository = annotationRepository;
+        this.imageStore = imageStore;
+        this.jpegQuality = jpegQuality;
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "annotated-render-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Resolve the hash of the annotated image for an inspection, rendering it if the
+     * current annotation version has not been rendered yet
+     */
+    public String getAnnotatedImageHash(Long inspectionId) {
+        String maintenanceHash = inspectionService.getInspectionEntity(inspectionId).getMaintenanceImageHash();
+        if (maintenanceHash == null) {
+            throw new ResourceNotFoundException("Annotated image", "inspectionId", inspectionId);
+        }
+        
+        List<Annotation> annotations = annotationRepository.findByInspectionIdAndDeletedFalse(inspectionId);
+        String version = annotationVersion(annotations);
+        return imageStore.findDerivative(maintenanceHash, VARIANT_PREFIX + version)
+                .orElseGet(() -> render(maintenanceHash, version, annotations));
+    }
+    
+    /**
+     * Fingerprint of the visible annotation state. Equal annotation sets always map to
+     * the same version, so identical renders are shared across inspections.
+     */
+    public String annotationVersion(List<Annotation> annotations) {
+        StringBuilder canonical = new StringBuilder().append(AnnotationOverlay.STYLE_VERSION).append('\n');
+        annotations.stream()
+                .sorted(Comparator.comparing(Annotation::getAnnotationId))
+                .forEach(a -> canonical.append(a.getAnnotationId()).append('|')
+                        .append(a.getX()).append('|').append(a.getY()).append('|')
+                        .append(a.getW()).append('|').append(a.getH()).append('|')
+                        .append(a.getSeverity()).append('|').append(a.getClassification()).append('|')
+                        .append(a.getConfidence()).append('\n'));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Render on the pool, or wait for a render of the same version already under way
+     */
+    private String render(String maintenanceHash, String version, List<Annotation> annotations) {
+        String key = maintenanceHash + "/" + version;
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    String variant = VARIANT_PREFIX + version;
+                    String renderedHash = imageStore.findDerivative(maintenanceHash, variant).orElseGet(() -> {
+                        String rendered = renderNow(maintenanceHash, annotations);
+                        imageStore.putDerivative(maintenanceHash, variant, rendered);
+                        log.debug("Rendered {} annotations on image {} as image {}", annotations.size(),
+                                maintenanceHash, rendered);
+                        return rendered;
+                    });
+                    mine.complete(renderedHash);
+                } catch (RuntimeException e) {
+                    mine.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(new ServiceUnavailableException(
+                    "Too many annotated images are being rendered", Duration.ofSeconds(5)));
+        }
+        return join(mine);
+    }
+    
+    private static String join(CompletableFuture<String> render) {
+        try {
+            return render.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    private String renderNow(String maintenanceHash, List<Annotation> annotations) {
+        try {
+            BufferedImage base;
+            try (InputStream in = imageStore.load(maintenanceHash).getInputStream()) {
+                base = ImageCodec.decode(in);
+            }
+            if (base == null) {
+                throw new ServiceException("Maintenance image " + maintenanceHash + " cannot be decoded for rendering");
+            }
+            byte[] encoded = ImageCodec.encodeJpeg(AnnotationOverlay.render(base, annotations), jpegQuality);
+            return imageStore.store(new ByteArrayInputStream(encoded)).getHash();
+        } catch (IOException e) {
+            throw new ServiceException("Failed to render annotated image", e);
+        }
+    }
+}
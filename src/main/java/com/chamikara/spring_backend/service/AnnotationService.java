@@ -2,17 +2,20 @@ package com.chamikara.spring_backend.service;
 
 import com.chamikara.spring_backend.dto.request.AnnotationRequest;
 import com.chamikara.spring_backend.dto.request.SaveAnnotationsRequest;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse.DetectedAnomaly;
 import com.chamikara.spring_backend.dto.response.AnnotationResponse;
 import com.chamikara.spring_backend.entity.Annotation;
 import com.chamikara.spring_backend.entity.AnnotationLog;
 import com.chamikara.spring_backend.entity.Inspection;
 import com.chamikara.spring_backend.exception.ResourceNotFoundException;
+import com.chamikara.spring_backend.exception.ServiceException;
 import com.chamikara.spring_backend.repository.AnnotationRepository;
 import com.chamikara.spring_backend.repository.AnnotationLogRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,7 +28,6 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 @Transactional
 public class AnnotationService {
@@ -34,9 +36,23 @@ public class AnnotationService {
     private final AnnotationLogRepository annotationLogRepository;
     private final InspectionService inspectionService;
     private final ObjectMapper objectMapper;
+    private final boolean saveDetections;
     
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
     
+    public AnnotationService(
+            AnnotationRepository annotationRepository,
+            AnnotationLogRepository annotationLogRepository,
+            InspectionService inspectionService,
+            ObjectMapper objectMapper,
+            @Value("${detection.annotations.auto-save:true}") boolean saveDetections) {
+        this.annotationRepository = annotationRepository;
+        this.annotationLogRepository = annotationLogRepository;
+        this.inspectionService = inspectionService;
+        this.objectMapper = objectMapper;
+        this.saveDetections = saveDetections;
+    }
+    
     public List<AnnotationResponse> getAnnotationsByInspectionId(Long inspectionId) {
         log.debug("Fetching annotations for inspection: {}", inspectionId);
         return annotationRepository.findByInspectionIdAndDeletedFalse(inspectionId).stream()
@@ -84,11 +100,6 @@ public class AnnotationService {
             createAnnotationLog(inspection, saved, actionType, aiPrediction, userId, now);
         }
         
-        // Update inspection with annotated image if provided
-        if (request.getAnnotatedImage() != null) {
-            inspection.setAnnotatedImage(request.getAnnotatedImage());
-        }
-        
         log.info("Saved {} annotations for inspection: {}", savedAnnotations.size(), inspectionId);
         
         return savedAnnotations.stream()
@@ -97,6 +108,107 @@ public class AnnotationService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Store a detection result for an inspection: each detected anomaly becomes an
+     * {@code ai} annotation with an {@code ai_generated} log entry, and the inspection's
+     * anomalies are replaced, all in one transaction.
+     * <p>
+     * Annotation ids are {@code ai_<inspectionId>_<anomalyId>}, so a repeated detection
+     * updates its earlier annotations. AI annotations a user has edited or deleted are
+     * kept as they are; untouched ones that the new result no longer contains are removed.
+     * An "unchanged" result from the perceptual prefilter is not stored, since no detection
+     * was run to replace the earlier annotations.
+     *
+     * @return the number of annotations created
+     */
+    public int saveDetectedAnnotations(Long inspectionId, AnomalyDetectionResponse response) {
+        if (!saveDetections || response == null || response.getAnomalies() == null
+                || Boolean.TRUE.equals(response.getUnchanged())) {
+            return 0;
+        }
+        
+        Inspection inspection = inspectionService.getInspectionEntity(inspectionId);
+        String now = LocalDateTime.now().format(FORMATTER);
+        String prefix = "ai_" + inspectionId + "_";
+        
+        Map<String, Annotation> previous = annotationRepository.findByInspectionId(inspectionId).stream()
+                .filter(annotation -> annotation.getAnnotationId().startsWith(prefix))
+                .collect(Collectors.toMap(Annotation::getAnnotationId, Function.identity()));
+        
+        List<Annotation> created = new ArrayList<>();
+        List<DetectedAnomaly> createdFrom = new ArrayList<>();
+        List<Annotation> updated = new ArrayList<>();
+        List<DetectedAnomaly> anomalies = response.getAnomalies();
+        for (int i = 0; i < anomalies.size(); i++) {
+            DetectedAnomaly anomaly = anomalies.get(i);
+            if (anomaly.getBbox() == null) {
+                continue;
+            }
+            String annotationId = prefix + (anomaly.getId() != null ? anomaly.getId() : String.valueOf(i));
+            Annotation existing = previous.remove(annotationId);
+            if (existing == null) {
+                created.add(createDetectedAnnotation(inspection, annotationId, anomaly, now));
+                createdFrom.add(anomaly);
+            } else if (isUntouched(existing)) {
+                updateDetectedFields(existing, anomaly, now);
+                updated.add(existing);
+            }
+        }
+        // Superseded by this detection
+        previous.values().stream()
+                .filter(annotation -> isUntouched(annotation) && !Boolean.TRUE.equals(annotation.getDeleted()))
+                .forEach(annotation -> {
+                    annotation.setDeleted(true);
+                    updated.add(annotation);
+                });
+        
+        List<Annotation> saved = annotationRepository.saveAll(created);
+        annotationRepository.saveAll(updated);
+        List<AnnotationLog> logs = new ArrayList<>(saved.size());
+        for (int i = 0; i < saved.size(); i++) {
+            logs.add(buildAnnotationLog(inspection, saved.get(i), "ai_generated",
+                    serialize(createdFrom.get(i)), "Admin", now));
+        }
+        annotationLogRepository.saveAll(logs);
+        inspection.setAnomalies(serialize(anomalies));
+        
+        log.info("Saved detection for inspection {}: {} annotations created, {} updated",
+                inspectionId, saved.size(), updated.size());
+        return saved.size();
+    }
+    
+    /**
+     * Whether an AI annotation is still as detected, i.e. no user has edited or deleted it
+     */
+    private static boolean isUntouched(Annotation annotation) {
+        return "ai".equals(annotation.getSource()) && annotation.getCreatedAt().equals(annotation.getUpdatedAt());
+    }
+    
+    private Annotation createDetectedAnnotation(Inspection inspection, String annotationId,
+                                                DetectedAnomaly anomaly, String now) {
+        Annotation annotation = Annotation.builder()
+                .inspection(inspection)
+                .annotationId(annotationId)
+                .source("ai")
+                .build();
+        updateDetectedFields(annotation, anomaly, now);
+        return annotation;
+    }
+    
+    private void updateDetectedFields(Annotation annotation, DetectedAnomaly anomaly, String now) {
+        annotation.setX(anomaly.getBbox().getX().doubleValue());
+        annotation.setY(anomaly.getBbox().getY().doubleValue());
+        annotation.setW(anomaly.getBbox().getWidth().doubleValue());
+        annotation.setH(anomaly.getBbox().getHeight().doubleValue());
+        annotation.setConfidence(anomaly.getConfidence());
+        annotation.setSeverity(anomaly.getSeverity());
+        annotation.setClassification(anomaly.getClassification());
+        annotation.setDeleted(false);
+        // Equal timestamps mark the annotation as untouched by users
+        annotation.setCreatedAt(now);
+        annotation.setUpdatedAt(now);
+    }
+    
     private Annotation createNewAnnotation(Inspection inspection, AnnotationRequest request, 
                                            String now, String userId) {
         return Annotation.builder()
@@ -133,10 +245,15 @@ public class AnnotationService {
     
     private void createAnnotationLog(Inspection inspection, Annotation annotation, 
                                      String actionType, String aiPrediction, String userId, String now) {
-        AnnotationLog log = AnnotationLog.builder()
+        annotationLogRepository.save(buildAnnotationLog(inspection, annotation, actionType, aiPrediction, userId, now));
+    }
+    
+    private AnnotationLog buildAnnotationLog(Inspection inspection, Annotation annotation,
+                                             String actionType, String aiPrediction, String userId, String now) {
+        return AnnotationLog.builder()
                 .inspection(inspection)
                 .transformer(inspection.getTransformer())
-                .imageId(inspection.getMaintenanceImage())
+                .imageId(inspection.getMaintenanceImageHash())
                 .actionType(actionType)
                 .annotationData(serializeAnnotation(annotation))
                 .aiPrediction(aiPrediction)
@@ -144,8 +261,6 @@ public class AnnotationService {
                 .userId(userId)
                 .timestamp(now)
                 .build();
-        
-        annotationLogRepository.save(log);
     }
     
     private String serializeAnnotation(Annotation annotation) {
@@ -157,6 +272,14 @@ public class AnnotationService {
         }
     }
     
+    private String serialize(Object detection) {
+        try {
+            return objectMapper.writeValueAsString(detection);
+        } catch (JsonProcessingException e) {
+            throw new ServiceException("Failed to serialize detection result", e);
+        }
+    }
+    
     private AnnotationResponse mapToResponse(Annotation annotation) {
         return AnnotationResponse.builder()
                 .id(annotation.getId())
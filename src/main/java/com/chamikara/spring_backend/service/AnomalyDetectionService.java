@@ -1,146 +1,230 @@
 package com.chamikara.spring_backend.service;
 
+import com.chamikara.spring_backend.detection.AdaptiveConcurrencyLimit;
+import com.chamikara.spring_backend.detection.DetectionCacheKey;
+import com.chamikara.spring_backend.detection.DetectionInput;
+import com.chamikara.spring_backend.detection.DetectionPriority;
+import com.chamikara.spring_backend.detection.DetectionResultCache;
+import com.chamikara.spring_backend.detection.DetectionRethresholder;
+import com.chamikara.spring_backend.detection.DetectionScheduler;
+import com.chamikara.spring_backend.detection.InferenceCircuitBreaker;
+import com.chamikara.spring_backend.detection.InferenceEndpoints;
+import com.chamikara.spring_backend.detection.InferenceHealth;
 import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.exception.ServiceUnavailableException;
+import com.chamikara.spring_backend.service.InferenceImagePreprocessor.PreparedImage;
+import com.chamikara.spring_backend.storage.Base64Images;
+import com.chamikara.spring_backend.storage.ImageContent;
+import com.chamikara.spring_backend.storage.ImageFormats;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.Base64;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
- * Service for communicating with the FastAPI anomaly detection microservice
+ * Service for communicating with the FastAPI anomaly detection microservice.
+ * Results are cached by image content, threshold adjustment and model version, so
+ * repeated detection of the same image pair does not reach FastAPI. Slider changes are
+ * answered locally from an earlier detection of the pair where possible, and concurrent
+ * identical requests share a single FastAPI call. A maintenance image that looks the same
+ * as its baseline by {@link PerceptualHashService} gets a "no change" result without a
+ * FastAPI call, unless the caller forces full detection.
+ * <p>
+ * Detections that need FastAPI wait for a call slot in the {@link DetectionScheduler},
+ * which admits them by priority and fair share. Calls then pass a circuit breaker and an
+ * adaptive concurrency limit, and are rejected with {@link ServiceUnavailableException}
+ * when FastAPI is failing or saturated. FastAPI's health is probed in the background, so health checks
+ * are answered from the latest probe without waiting on FastAPI. Requests share the pooled
+ * {@link WebClient} configured in {@code WebClientConfig} and are spread across the
+ * configured FastAPI replicas by {@link InferenceEndpoints}.
+ * <p>
+ * Images are streamed to FastAPI in chunks of {@code fastapi.client.upload-chunk-size}
+ * from the image store or, for base64 input, decoded from the request string as they are
+ * sent, so no decoded copy of an image is held on the heap. With preprocessing enabled,
+ * {@link InferenceImagePreprocessor} first downscales large images, and anomaly boxes are
+ * scaled back to the original image before the response is cached or returned.
  */
 @Service
 @Slf4j
 public class AnomalyDetectionService {
     
+    private final ImageService imageService;
+    private final InferenceImagePreprocessor preprocessor;
+    private final PerceptualHashService perceptualHashService;
+    private final DetectionResultCache resultCache;
+    private final DetectionRethresholder rethresholder;
+    private final DetectionScheduler scheduler;
     private final WebClient webClient;
+    private final String detectEndpoint;
     private final long timeout;
+    private final String modelVersion;
+    private final int uploadChunkSize;
+    private final InferenceCircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final InferenceEndpoints endpoints;
+    private final Duration healthInterval;
+    private final Duration healthTimeout;
+    
+    private volatile InferenceHealth health = InferenceHealth.UNKNOWN;
+    private Disposable healthProbe;
+    
+    private final Map<Flight, Mono<AnomalyDetectionResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter calls;
+    private final Counter coalesced;
+    private final Counter unchanged;
+    private final Counter changed;
+    private final Counter forced;
     
     public AnomalyDetectionService(
-            @Value("${fastapi.service.url}") String fastApiUrl,
-            @Value("${fastapi.service.timeout:60000}") long timeout) {
-        this.webClient = WebClient.builder()
-                .baseUrl(fastApiUrl)
-                .build();
+            ImageService imageService,
+            InferenceImagePreprocessor preprocessor,
+            PerceptualHashService perceptualHashService,
+            DetectionResultCache resultCache,
+            DetectionRethresholder rethresholder,
+            DetectionScheduler scheduler,
+            InferenceCircuitBreaker circuitBreaker,
+            AdaptiveConcurrencyLimit concurrencyLimit,
+            InferenceEndpoints endpoints,
+            WebClient webClient,
+            MeterRegistry meterRegistry,
+            @Value("${fastapi.service.detect-endpoint:/api/v1/detect}") String detectEndpoint,
+            @Value("${fastapi.service.timeout:60000}") long timeout,
+            @Value("${fastapi.service.model-version:default}") String modelVersion,
+            @Value("${fastapi.client.upload-chunk-size:64KB}") DataSize uploadChunkSize,
+            @Value("${fastapi.service.health.interval:10s}") Duration healthInterval,
+            @Value("${fastapi.service.health.timeout:5s}") Duration healthTimeout) {
+        this.imageService = imageService;
+        this.preprocessor = preprocessor;
+        this.perceptualHashService = perceptualHashService;
+        this.resultCache = resultCache;
+        this.rethresholder = rethresholder;
+        this.scheduler = scheduler;
+        this.webClient = webClient;
+        this.detectEndpoint = detectEndpoint;
         this.timeout = timeout;
+        this.modelVersion = modelVersion + preprocessor.cacheTag();
+        this.uploadChunkSize = (int) uploadChunkSize.toBytes();
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimit = concurrencyLimit;
+        this.endpoints = endpoints;
+        this.healthInterval = healthInterval;
+        this.healthTimeout = healthTimeout;
+        this.calls = Counter.builder("detection.singleflight.requests").tag("result", "called").register(meterRegistry);
+        this.coalesced = Counter.builder("detection.singleflight.requests").tag("result", "coalesced").register(meterRegistry);
+        this.unchanged = Counter.builder("detection.prefilter.requests").tag("result", "unchanged")
+                .description("Detections answered without calling FastAPI").register(meterRegistry);
+        this.changed = Counter.builder("detection.prefilter.requests").tag("result", "changed").register(meterRegistry);
+        this.forced = Counter.builder("detection.prefilter.requests").tag("result", "forced").register(meterRegistry);
+        Gauge.builder("detection.singleflight.in-flight", inFlight, Map::size).register(meterRegistry);
+        Gauge.builder("detection.health.up", this, service -> service.health.isHealthy() ? 1 : 0).register(meterRegistry);
+    }
+    
+    @PostConstruct
+    void startHealthProbe() {
+        healthProbe = Flux.interval(Duration.ZERO, healthInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> probe())
+                .subscribe();
+    }
+    
+    @PreDestroy
+    void stopHealthProbe() {
+        if (healthProbe != null) {
+            healthProbe.dispose();
+        }
     }
     
     /**
-     * Detect anomalies by comparing baseline and maintenance images
-     *
-     * @param transformerId The transformer identifier
-     * @param baselineImage Base64 encoded baseline image (with or without data URI prefix)
-     * @param maintenanceImage Base64 encoded maintenance image (with or without data URI prefix)
-     * @param sliderPercent Optional threshold adjustment percentage
-     * @return AnomalyDetectionResponse with detection results
+     * Detect anomalies for images already held in the image store. The images are
+     * streamed from the store, so only references need to reach this service, and no
+     * thread is held while FastAPI processes the request.
      */
-    public AnomalyDetectionResponse detectAnomalies(
-            String transformerId,
-            String baselineImage,
-            String maintenanceImage,
-            Double sliderPercent) {
-        
-        log.info("Calling anomaly detection service for transformer: {}", transformerId);
+    public Mono<AnomalyDetectionResponse> detectAnomaliesAsync(DetectionInput input) {
+        log.info("Calling anomaly detection service asynchronously for transformer: {} (baseline {}, maintenance {})",
+                input.getTransformerId(), input.getBaselineHash(), input.getMaintenanceHash());
         
-        try {
-            // Convert base64 to bytes
-            byte[] baselineBytes = decodeBase64Image(baselineImage);
-            byte[] maintenanceBytes = decodeBase64Image(maintenanceImage);
-            
-            // Build multipart request
-            MultipartBodyBuilder builder = new MultipartBodyBuilder();
-            builder.part("baseline", new ByteArrayResource(baselineBytes) {
-                @Override
-                public String getFilename() {
-                    return "baseline.png";
-                }
-            }).contentType(MediaType.IMAGE_PNG);
-            
-            builder.part("maintenance", new ByteArrayResource(maintenanceBytes) {
-                @Override
-                public String getFilename() {
-                    return "maintenance.png";
-                }
-            }).contentType(MediaType.IMAGE_PNG);
-            
-            builder.part("transformer_id", transformerId);
-            
-            if (sliderPercent != null) {
-                builder.part("slider_percent", sliderPercent.toString());
-            }
-            
-            // Make request to FastAPI
-            AnomalyDetectionResponse response = webClient.post()
-                    .uri("/api/v1/detect")
-                    .contentType(MediaType.MULTIPART_FORM_DATA)
-                    .body(BodyInserters.fromMultipartData(builder.build()))
-                    .retrieve()
-                    .bodyToMono(AnomalyDetectionResponse.class)
-                    .timeout(Duration.ofMillis(timeout))
-                    .block();
-            
-            log.info("Anomaly detection completed for transformer: {}. Found {} anomalies", 
-                    transformerId, response != null ? response.getAnomalyCount() : 0);
-            
-            return response;
-            
-        } catch (Exception e) {
-            log.error("Failed to detect anomalies for transformer: {}", transformerId, e);
-            throw new RuntimeException("Anomaly detection service call failed: " + e.getMessage(), e);
-        }
+        DetectionCacheKey key = cacheKey(input.getBaselineHash(), input.getMaintenanceHash(), input.getSliderPercent());
+        return cached(key, input.getTransformerId(), input.getPriority(), input.getRegion(),
+                input.isForce() ? null : () -> perceptualHashService.unchangedDistance(
+                        input.getBaselineHash(), input.getMaintenanceHash()),
+                () -> {
+                    ImageContent baseline = imageService.getImage(input.getBaselineHash());
+                    ImageContent maintenance = imageService.getImage(input.getMaintenanceHash());
+                    return post(input.getTransformerId(),
+                            preprocessor.prepare(baseline.getImage(), baseline.getResource()),
+                            preprocessor.prepare(maintenance.getImage(), maintenance.getResource()),
+                            input.getSliderPercent());
+                })
+                .doOnNext(response -> log.info("Anomaly detection completed for transformer: {}. Found {} anomalies",
+                        input.getTransformerId(), response.getAnomalyCount()))
+                .doOnError(e -> log.error("Failed to detect anomalies for transformer: {}", input.getTransformerId(), e));
     }
     
     /**
      * Asynchronous version of anomaly detection
+     *
+     * @param force run full detection even if the images look unchanged
      */
     public Mono<AnomalyDetectionResponse> detectAnomaliesAsync(
             String transformerId,
             String baselineImage,
             String maintenanceImage,
-            Double sliderPercent) {
+            Double sliderPercent,
+            boolean force) {
         
         log.info("Calling anomaly detection service asynchronously for transformer: {}", transformerId);
         
         try {
-            byte[] baselineBytes = decodeBase64Image(baselineImage);
-            byte[] maintenanceBytes = decodeBase64Image(maintenanceImage);
-            
-            MultipartBodyBuilder builder = new MultipartBodyBuilder();
-            builder.part("baseline", new ByteArrayResource(baselineBytes) {
-                @Override
-                public String getFilename() {
-                    return "baseline.png";
-                }
-            }).contentType(MediaType.IMAGE_PNG);
-            
-            builder.part("maintenance", new ByteArrayResource(maintenanceBytes) {
-                @Override
-                public String getFilename() {
-                    return "maintenance.png";
-                }
-            }).contentType(MediaType.IMAGE_PNG);
-            
-            builder.part("transformer_id", transformerId);
-            
-            if (sliderPercent != null) {
-                builder.part("slider_percent", sliderPercent.toString());
-            }
-            
-            return webClient.post()
-                    .uri("/api/v1/detect")
-                    .contentType(MediaType.MULTIPART_FORM_DATA)
-                    .body(BodyInserters.fromMultipartData(builder.build()))
-                    .retrieve()
-                    .bodyToMono(AnomalyDetectionResponse.class)
-                    .timeout(Duration.ofMillis(timeout));
+            return cached(cacheKey(sha256(baselineImage), sha256(maintenanceImage), sliderPercent), transformerId,
+                    DetectionPriority.INTERACTIVE, null,
+                    force ? null : () -> perceptualHashService.unchangedDistance(
+                            Base64Images.asResource(baselineImage), Base64Images.asResource(maintenanceImage)),
+                    () -> post(transformerId,
+                            preprocessor.prepare(Base64Images.asResource(baselineImage), MediaType.IMAGE_PNG_VALUE),
+                            preprocessor.prepare(Base64Images.asResource(maintenanceImage), MediaType.IMAGE_PNG_VALUE),
+                            sliderPercent));
             
         } catch (Exception e) {
             log.error("Failed to prepare anomaly detection request for transformer: {}", transformerId, e);
@@ -149,38 +233,303 @@ public class AnomalyDetectionService {
     }
     
     /**
-     * Check if the FastAPI service is healthy
+     * Serve the result from the cache or by re-thresholding an earlier detection, then
+     * answer "no change" if the images look alike, or join the detection of the same images
+     * already in flight. Only when there is none is a new detection queued in the scheduler,
+     * so identical requests hold a single call slot between them. The cache is checked
+     * again on admission, since another detection of the same images may have completed in
+     * the meantime. Results may come from another transformer with identical images, so the
+     * transformer is taken from the current request.
+     *
+     * @param prefilter distance between the images if they look unchanged; null to force
+     *                  full detection
      */
-    public boolean isServiceHealthy() {
-        try {
-            String response = webClient.get()
-                    .uri("/health")
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(5))
-                    .block();
-            return response != null && response.contains("healthy");
-        } catch (Exception e) {
-            log.warn("FastAPI service health check failed", e);
-            return false;
+    private Mono<AnomalyDetectionResponse> cached(
+            DetectionCacheKey key,
+            String transformerId,
+            DetectionPriority priority,
+            String region,
+            Supplier<OptionalInt> prefilter,
+            Supplier<Mono<AnomalyDetectionResponse>> call) {
+        return local(key)
+                .doOnNext(response -> log.debug("Serving local detection result for transformer: {}", transformerId))
+                .switchIfEmpty(Mono.defer(() -> unchanged(prefilter)))
+                .switchIfEmpty(Mono.defer(() -> singleFlight(new Flight(key, priority),
+                        () -> scheduler.schedule(priority, region,
+                                () -> local(key).switchIfEmpty(Mono.defer(() -> detect(key, call)))))))
+                .map(response -> forTransformer(response, transformerId));
+    }
+    
+    /**
+     * A "no change" result if the perceptual prefilter finds the images alike. It has no
+     * image-level label, since no model has judged the image. Prefilter failures only mean
+     * the detection goes ahead.
+     */
+    private Mono<AnomalyDetectionResponse> unchanged(Supplier<OptionalInt> prefilter) {
+        if (!perceptualHashService.isEnabled()) {
+            return Mono.empty();
         }
+        if (prefilter == null) {
+            forced.increment();
+            return Mono.empty();
+        }
+        return Mono.fromCallable(prefilter::get)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("Perceptual prefilter failed, running full detection", e);
+                    return Mono.just(OptionalInt.empty());
+                })
+                .flatMap(distance -> {
+                    if (distance.isEmpty()) {
+                        changed.increment();
+                        return Mono.empty();
+                    }
+                    unchanged.increment();
+                    log.debug("Images look unchanged (distance {}), skipping FastAPI", distance.getAsInt());
+                    return Mono.just(AnomalyDetectionResponse.builder()
+                            .requestId("prefilter-" + UUID.randomUUID())
+                            .timestamp(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                            .anomalyCount(0)
+                            .anomalies(List.of())
+                            .unchanged(true)
+                            .perceptualDistance(distance.getAsInt())
+                            .build());
+                });
+    }
+    
+    private Mono<AnomalyDetectionResponse> local(DetectionCacheKey key) {
+        return resultCache.get(key)
+                .switchIfEmpty(Mono.fromCallable(() -> rethresholder.rethreshold(key)).flatMap(Mono::justOrEmpty));
+    }
+    
+    /**
+     * Call FastAPI and keep the response for later requests
+     */
+    private Mono<AnomalyDetectionResponse> detect(DetectionCacheKey key, Supplier<Mono<AnomalyDetectionResponse>> call) {
+        return Mono.defer(call)
+                .doOnNext(response -> {
+                    resultCache.put(key, response);
+                    rethresholder.offer(key, response);
+                });
+    }
+    
+    /**
+     * Join the detection already in flight for the key, queued or running, or start one.
+     * It is cancelled only when every caller waiting for it has cancelled. Once it has
+     * finished, later requests are served by the cache instead.
+     */
+    private Mono<AnomalyDetectionResponse> singleFlight(
+            Flight flight,
+            Supplier<Mono<AnomalyDetectionResponse>> detection) {
+        AtomicBoolean started = new AtomicBoolean();
+        Mono<AnomalyDetectionResponse> shared = inFlight.computeIfAbsent(flight, k -> {
+            started.set(true);
+            AtomicReference<Mono<AnomalyDetectionResponse>> self = new AtomicReference<>();
+            self.set(Mono.defer(detection)
+                    .doFinally(signal -> inFlight.remove(flight, self.get()))
+                    .flux()
+                    .share()
+                    .singleOrEmpty());
+            return self.get();
+        });
+        (started.get() ? calls : coalesced).increment();
+        return shared;
     }
     
     /**
-     * Decode base64 image string (handles data URI prefix)
+     * Detections are only shared within a priority class, so an interactive request never
+     * waits behind a queued bulk detection of the same images
      */
-    private byte[] decodeBase64Image(String base64Image) {
-        if (base64Image == null || base64Image.isEmpty()) {
-            throw new IllegalArgumentException("Image data cannot be empty");
+    private record Flight(DetectionCacheKey key, DetectionPriority priority) {
+    }
+    
+    /**
+     * Make the call if both the circuit breaker and the concurrency limit admit it, and
+     * report its outcome to them. Timeouts, connection failures and server errors count
+     * against FastAPI; errors caused by the request itself do not.
+     */
+    private Mono<AnomalyDetectionResponse> guarded(Supplier<Mono<AnomalyDetectionResponse>> call) {
+        return Mono.defer(() -> {
+            InferenceCircuitBreaker.Permit breakerPermit = circuitBreaker.tryAcquire();
+            if (breakerPermit == null) {
+                return Mono.error(new ServiceUnavailableException(
+                        "Anomaly detection service is failing, calls are suspended", circuitBreaker.getRetryAfter()));
+            }
+            AdaptiveConcurrencyLimit.Permit limitPermit = concurrencyLimit.tryAcquire();
+            if (limitPermit == null) {
+                breakerPermit.release();
+                return Mono.error(new ServiceUnavailableException(
+                        "Anomaly detection service is at capacity (" + concurrencyLimit.getLimit() + " concurrent calls)",
+                        Duration.ofSeconds(1)));
+            }
+            
+            long start = System.nanoTime();
+            return Mono.defer(call)
+                    .doOnSuccess(response -> {
+                        long latency = System.nanoTime() - start;
+                        breakerPermit.onSuccess(latency);
+                        limitPermit.onSuccess(latency);
+                    })
+                    .doOnError(e -> {
+                        if (isServiceFailure(e)) {
+                            breakerPermit.onFailure();
+                            limitPermit.onDropped();
+                        } else {
+                            breakerPermit.release();
+                            limitPermit.release();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        breakerPermit.release();
+                        limitPermit.release();
+                    });
+        });
+    }
+    
+    private static boolean isServiceFailure(Throwable e) {
+        return e instanceof TimeoutException
+                || e instanceof WebClientRequestException
+                || (e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError());
+    }
+    
+    /**
+     * The response as seen by the given transformer. Shared responses are copied rather
+     * than modified, since other callers may hold the same instance.
+     */
+    private static AnomalyDetectionResponse forTransformer(AnomalyDetectionResponse response, String transformerId) {
+        if (transformerId == null || transformerId.equals(response.getTransformerId())) {
+            return response;
         }
+        return response.toBuilder().transformerId(transformerId).build();
+    }
+    
+    private DetectionCacheKey cacheKey(String baselineHash, String maintenanceHash, Double sliderPercent) {
+        return new DetectionCacheKey(baselineHash, maintenanceHash, sliderPercent, modelVersion);
+    }
+    
+    /**
+     * Prepare both images, then build the multipart detect request and send it to FastAPI
+     * through the circuit breaker and concurrency limit. Preparation happens before a
+     * call slot is taken, so its time does not count as FastAPI latency.
+     */
+    private Mono<AnomalyDetectionResponse> post(
+            String transformerId,
+            Mono<PreparedImage> baselineImage,
+            Mono<PreparedImage> maintenanceImage,
+            Double sliderPercent) {
+        return Mono.zip(baselineImage, maintenanceImage)
+                .flatMap(images -> guarded(() -> send(transformerId, images.getT1(), images.getT2(), sliderPercent))
+                        .map(response -> InferenceImagePreprocessor.toOriginalScale(response, images.getT2())));
+    }
+    
+    private Mono<AnomalyDetectionResponse> send(
+            String transformerId,
+            PreparedImage baseline,
+            PreparedImage maintenance,
+            Double sliderPercent) {
+        
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.asyncPart("baseline", stream(baseline.resource()), DataBuffer.class)
+                .contentType(MediaType.parseMediaType(baseline.contentType()))
+                .filename("baseline." + ImageFormats.extension(baseline.contentType()));
         
-        String base64Data = base64Image;
+        builder.asyncPart("maintenance", stream(maintenance.resource()), DataBuffer.class)
+                .contentType(MediaType.parseMediaType(maintenance.contentType()))
+                .filename("maintenance." + ImageFormats.extension(maintenance.contentType()));
         
-        // Remove data URI prefix if present
-        if (base64Image.contains(",")) {
-            base64Data = base64Image.substring(base64Image.indexOf(",") + 1);
+        builder.part("transformer_id", transformerId);
+        
+        if (sliderPercent != null) {
+            builder.part("slider_percent", sliderPercent.toString());
         }
         
-        return Base64.getDecoder().decode(base64Data);
+        MultiValueMap<String, HttpEntity<?>> parts = builder.build();
+        // The caller's Deadline cancels this call when it passes, unless another caller
+        // still waits for the same detection, so the fixed timeout only caps calls made
+        // without a deadline and those shared with callers that have more time
+        return endpoints.call(baseUrl -> webClient.post()
+                        .uri(baseUrl + detectEndpoint)
+                        .contentType(MediaType.MULTIPART_FORM_DATA)
+                        .body(BodyInserters.fromMultipartData(parts))
+                        .retrieve()
+                        .bodyToMono(AnomalyDetectionResponse.class)
+                        .timeout(Duration.ofMillis(timeout)),
+                AnomalyDetectionService::isServiceFailure);
+    }
+    
+    /**
+     * Read a resource as chunks that are only requested as the connection takes them, so
+     * at most a few chunks per image are in memory. Each subscription reads it afresh,
+     * which lets a failed call be retried on another replica.
+     */
+    private Flux<DataBuffer> stream(Resource image) {
+        return DataBufferUtils.read(image, DefaultDataBufferFactory.sharedInstance, uploadChunkSize);
+    }
+    
+    /**
+     * Check if the FastAPI service is healthy, as of the latest background probe
+     */
+    public boolean isServiceHealthy() {
+        return health.isHealthy();
+    }
+    
+    public InferenceHealth getHealth() {
+        return health;
+    }
+    
+    public InferenceCircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+    
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getLimit();
+    }
+    
+    public List<InferenceEndpoints.Endpoint> getEndpoints() {
+        return endpoints.getEndpoints();
+    }
+    
+    /**
+     * Call the health endpoint of every FastAPI replica and record the results. FastAPI
+     * counts as healthy while any replica is. Never fails, so the probe keeps running.
+     */
+    private Mono<InferenceHealth> probe() {
+        long start = System.nanoTime();
+        return Flux.fromIterable(endpoints.getEndpoints())
+                .flatMap(endpoint -> endpoints.probe(endpoint, baseUrl -> webClient.get()
+                        .uri(baseUrl + "/health")
+                        .retrieve()
+                        .bodyToMono(JsonNode.class)
+                        .timeout(healthTimeout)))
+                .reduce(false, Boolean::logicalOr)
+                .map(healthy -> {
+                    InferenceHealth checked = new InferenceHealth(healthy,
+                            LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                            Duration.ofNanos(System.nanoTime() - start).toMillis());
+                    if (healthy != health.isHealthy() || health.getCheckedAt() == null) {
+                        if (healthy) {
+                            log.info("FastAPI service is healthy");
+                        } else {
+                            log.warn("FastAPI service health check failed");
+                        }
+                    }
+                    health = checked;
+                    return checked;
+                });
+    }
+    
+    /**
+     * Hash a base64 image as it is decoded, without materialising its bytes
+     */
+    private static String sha256(String base64Image) {
+        try (DigestInputStream in = new DigestInputStream(Base64Images.open(base64Image),
+                MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
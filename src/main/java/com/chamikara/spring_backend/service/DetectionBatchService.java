@@ -0,0 +1,139 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.dto.request.BatchDetectionRequest;
+import com.chamikara.spring_backend.dto.response.DetectionBatchResponse;
+import com.chamikara.spring_backend.dto.response.DetectionJobResponse;
+import com.chamikara.spring_backend.entity.DetectionBatch;
+import com.chamikara.spring_backend.entity.DetectionJob;
+import com.chamikara.spring_backend.exception.ResourceNotFoundException;
+import com.chamikara.spring_backend.repository.DetectionBatchRepository;
+import com.chamikara.spring_backend.repository.DetectionJobRepository;
+import com.chamikara.spring_backend.repository.InspectionRepository;
+import com.chamikara.spring_backend.repository.projection.InspectionImages;
+import com.chamikara.spring_backend.repository.projection.StatusCount;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Fleet-wide anomaly detection. A batch selects inspections by filter and queues one
+ * detection job per inspection on the batch lane of {@link DetectionJobService}, which
+ * bounds how many of them run at once. Each job stores its result as it completes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DetectionBatchService {
+    
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    
+    private final DetectionBatchRepository batchRepository;
+    private final DetectionJobRepository jobRepository;
+    private final InspectionRepository inspectionRepository;
+    private final DetectionJobService detectionJobService;
+    
+    /**
+     * Store the batch and its jobs in one transaction; the jobs are only queued once it
+     * has committed, so a failure leaves neither a batch without jobs nor jobs running
+     * for a batch that was rolled back
+     */
+    @Transactional
+    public DetectionBatchResponse submit(BatchDetectionRequest request) {
+        boolean byTransformer = request.getTransformerIds() != null && !request.getTransformerIds().isEmpty();
+        if (isBlank(request.getRegion()) && isBlank(request.getStatus()) && !byTransformer) {
+            throw new IllegalArgumentException("At least one of region, transformerIds or status is required");
+        }
+        
+        List<InspectionImages> selected = inspectionRepository.findImages(blankToNull(request.getRegion()),
+                blankToNull(request.getStatus()), byTransformer ? new HashSet<>(request.getTransformerIds()) : null);
+        List<InspectionImages> detectable = selected.stream()
+                .filter(inspection -> inspection.getBaselineImageHash() != null && inspection.getMaintenanceImageHash() != null)
+                .toList();
+        
+        DetectionBatch batch = batchRepository.save(DetectionBatch.builder()
+                .region(blankToNull(request.getRegion()))
+                .inspectionStatus(blankToNull(request.getStatus()))
+                .transformerIds(byTransformer ? request.getTransformerIds().stream()
+                        .map(String::valueOf)
+                        .collect(Collectors.joining(",")) : null)
+                .sliderPercent(request.getSliderPercent())
+                .total(detectable.size())
+                .skipped(selected.size() - detectable.size())
+                .createdAt(LocalDateTime.now().format(FORMATTER))
+                .build());
+        
+        String createdAt = batch.getCreatedAt();
+        detectionJobService.enqueue(detectable.stream()
+                .map(inspection -> DetectionJob.builder()
+                        .inspectionId(inspection.getId())
+                        .batchId(batch.getId())
+                        .transformerId(inspection.getTransformerNumber())
+                        .region(inspection.getRegion())
+                        .baselineImageHash(inspection.getBaselineImageHash())
+                        .maintenanceImageHash(inspection.getMaintenanceImageHash())
+                        .sliderPercent(request.getSliderPercent())
+                        .createdAt(createdAt)
+                        .build())
+                .toList());
+        
+        log.info("Queued detection batch {} with {} inspections ({} skipped without images)",
+                batch.getId(), batch.getTotal(), batch.getSkipped());
+        return mapToResponse(batch);
+    }
+    
+    public DetectionBatchResponse getBatch(Long id) {
+        return mapToResponse(getBatchEntity(id));
+    }
+    
+    public List<DetectionJobResponse> getBatchJobs(Long id) {
+        getBatchEntity(id);
+        return detectionJobService.getBatchJobs(id);
+    }
+    
+    private DetectionBatch getBatchEntity(Long id) {
+        return batchRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("DetectionBatch", "id", id));
+    }
+    
+    private DetectionBatchResponse mapToResponse(DetectionBatch batch) {
+        Map<String, Long> counts = jobRepository.countByBatchIdGroupByStatus(batch.getId()).stream()
+                .collect(Collectors.toMap(StatusCount::getStatus, StatusCount::getCount));
+        long queued = counts.getOrDefault(DetectionJob.QUEUED, 0L);
+        long running = counts.getOrDefault(DetectionJob.RUNNING, 0L);
+        
+        return DetectionBatchResponse.builder()
+                .id(batch.getId())
+                .region(batch.getRegion())
+                .transformerIds(batch.getTransformerIds() != null
+                        ? Arrays.stream(batch.getTransformerIds().split(",")).map(Long::valueOf).toList()
+                        : null)
+                .inspectionStatus(batch.getInspectionStatus())
+                .sliderPercent(batch.getSliderPercent())
+                .status(queued + running > 0 ? "RUNNING" : "COMPLETED")
+                .total(batch.getTotal())
+                .skipped(batch.getSkipped())
+                .queued(queued)
+                .running(running)
+                .completed(counts.getOrDefault(DetectionJob.COMPLETED, 0L))
+                .failed(counts.getOrDefault(DetectionJob.FAILED, 0L))
+                .createdAt(batch.getCreatedAt())
+                .build();
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
+    private static String blankToNull(String value) {
+        return isBlank(value) ? null : value;
+    }
+}
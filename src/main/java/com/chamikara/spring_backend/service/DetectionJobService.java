@@ -0,0 +1,436 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.detection.DetectionInput;
+import com.chamikara.spring_backend.detection.DetectionPriority;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.dto.response.DetectionJobResponse;
+import com.chamikara.spring_backend.entity.DetectionJob;
+import com.chamikara.spring_backend.exception.ResourceNotFoundException;
+import com.chamikara.spring_backend.exception.ServiceUnavailableException;
+import com.chamikara.spring_backend.repository.DetectionJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent queue of anomaly detection jobs. Jobs are stored before they are queued,
+ * drained by a fixed pool of worker threads, and re-queued from the database on startup,
+ * so a restart does not lose queued or in-flight detections. Job state changes are pushed
+ * to Server-Sent Event subscribers.
+ * <p>
+ * Jobs belonging to a batch take a separate lane: a Reactor pipeline whose {@code flatMap}
+ * concurrency caps the number of batch detections in flight, however many are queued.
+ * <p>
+ * Assumes a single application instance: on startup every job still marked running is
+ * treated as interrupted by the previous shutdown.
+ */
+@Service
+@Slf4j
+public class DetectionJobService implements ApplicationRunner {
+    
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    
+    private final DetectionJobRepository jobRepository;
+    private final InspectionService inspectionService;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final AnnotationService annotationService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int workers;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration sseTimeout;
+    private final int batchConcurrency;
+    
+    private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService workerPool;
+    private final ScheduledExecutorService retryScheduler;
+    private final Sinks.Many<Long> batchLane = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable batchPipeline;
+    private volatile boolean shuttingDown;
+    
+    public DetectionJobService(
+            DetectionJobRepository jobRepository,
+            InspectionService inspectionService,
+            AnomalyDetectionService anomalyDetectionService,
+            AnnotationService annotationService,
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${detection.jobs.workers:4}") int workers,
+            @Value("${detection.jobs.max-attempts:3}") int maxAttempts,
+            @Value("${detection.jobs.retry-delay:10s}") Duration retryDelay,
+            @Value("${detection.jobs.sse-timeout:5m}") Duration sseTimeout,
+            @Value("${detection.batch.concurrency:4}") int batchConcurrency) {
+        this.jobRepository = jobRepository;
+        this.inspectionService = inspectionService;
+        this.anomalyDetectionService = anomalyDetectionService;
+        this.annotationService = annotationService;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.sseTimeout = sseTimeout;
+        this.batchConcurrency = batchConcurrency;
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "detection-jobs-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "detection-jobs-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Re-queue jobs left over from the previous run, then start the workers
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        batchPipeline = batchLane.asFlux()
+                .flatMap(id -> process(id)
+                        .onErrorResume(e -> {
+                            log.error("Batch detection job {} failed", id, e);
+                            return Mono.empty();
+                        }), batchConcurrency)
+                .subscribe();
+        
+        int interrupted = jobRepository.requeueRunning();
+        List<DetectionJob> pending = jobRepository.findByStatusOrderByIdAsc(DetectionJob.QUEUED);
+        pending.forEach(this::dispatch);
+        if (!pending.isEmpty()) {
+            log.info("Re-queued {} detection jobs ({} interrupted by the previous shutdown)", pending.size(), interrupted);
+        }
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+    }
+    
+    /**
+     * Queue detection for an inspection and return immediately
+     */
+    public DetectionJobResponse submit(Long inspectionId, Double sliderPercent, boolean force) {
+        DetectionInput input = inspectionService.getDetectionInput(inspectionId);
+        
+        DetectionJob job = jobRepository.save(DetectionJob.builder()
+                .inspectionId(inspectionId)
+                .transformerId(input.getTransformerId())
+                .baselineImageHash(input.getBaselineHash())
+                .maintenanceImageHash(input.getMaintenanceHash())
+                .sliderPercent(sliderPercent)
+                .force(force)
+                .region(input.getRegion())
+                .createdAt(now())
+                .build());
+        queue.add(job.getId());
+        
+        log.info("Queued detection job {} for inspection {}", job.getId(), inspectionId);
+        return mapToResponse(job);
+    }
+    
+    /**
+     * Store prepared jobs, e.g. the jobs of a batch, and queue them once the caller's
+     * transaction commits (at once when there is none)
+     */
+    public List<DetectionJob> enqueue(List<DetectionJob> jobs) {
+        List<DetectionJob> saved = jobRepository.saveAll(jobs);
+        eventPublisher.publishEvent(new DetectionJobsStoredEvent(saved));
+        return saved;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJobsStored(DetectionJobsStoredEvent event) {
+        event.getJobs().forEach(this::dispatch);
+    }
+    
+    public DetectionJobResponse getJob(Long id) {
+        return mapToResponse(getJobEntity(id));
+    }
+    
+    public List<DetectionJobResponse> getBatchJobs(Long batchId) {
+        return jobRepository.findByBatchIdOrderByIdAsc(batchId).stream()
+                .map(this::mapToResponse)
+                .toList();
+    }
+    
+    /**
+     * Stream state changes of a job. The current state is sent immediately and the
+     * stream completes once the job has completed or failed. A job that has already
+     * finished is sent once without registering a subscriber.
+     */
+    public SseEmitter subscribe(Long id) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        DetectionJob job = getJobEntity(id);
+        if (isFinished(job)) {
+            send(emitter, job);
+            return emitter;
+        }
+        
+        subscribers.compute(id, (key, emitters) -> {
+            List<SseEmitter> registered = emitters != null ? emitters : new CopyOnWriteArrayList<>();
+            registered.add(emitter);
+            return registered;
+        });
+        emitter.onCompletion(() -> unsubscribe(id, emitter));
+        emitter.onTimeout(() -> unsubscribe(id, emitter));
+        emitter.onError(e -> unsubscribe(id, emitter));
+        
+        // Registered before reading the state again, so no transition can be missed
+        send(emitter, getJobEntity(id));
+        return emitter;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        if (batchPipeline != null) {
+            batchPipeline.dispose();
+        }
+        workerPool.shutdownNow();
+        retryScheduler.shutdownNow();
+    }
+    
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                execute(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Detection job worker failed", e);
+            }
+        }
+    }
+    
+    private void execute(Long id) {
+        try {
+            process(id).block();
+        } catch (RuntimeException e) {
+            if (!shuttingDown) {
+                throw e;
+            }
+            // Left running; it is re-queued on the next startup
+        }
+    }
+    
+    /**
+     * Claim, run and record one job. Database access runs on the bounded elastic scheduler,
+     * so no event loop thread blocks on it. Completes empty if the job was claimed elsewhere;
+     * if cancelled mid-detection, the job stays running and is re-queued on the next startup.
+     */
+    private Mono<Void> process(Long id) {
+        return Mono.fromCallable(() -> claim(id))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(Mono::justOrEmpty)
+                .flatMap(job -> anomalyDetectionService.detectAnomaliesAsync(toInput(job))
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(response -> completed(job, response))
+                        .onErrorResume(e -> Mono.just(failed(job, e))))
+                .doOnNext(this::record)
+                .then();
+    }
+    
+    private Optional<DetectionJob> claim(Long id) {
+        if (jobRepository.claim(id, now()) == 0) {
+            return Optional.empty();
+        }
+        DetectionJob job = getJobEntity(id);
+        publish(job);
+        return Optional.of(job);
+    }
+    
+    private DetectionJob completed(DetectionJob job, AnomalyDetectionResponse response) {
+        // Fails the attempt if the annotations cannot be stored, retried if the failure is transient
+        annotationService.saveDetectedAnnotations(job.getInspectionId(), response);
+        try {
+            job.setResult(objectMapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            return failed(job, e);
+        }
+        job.setStatus(DetectionJob.COMPLETED);
+        job.setError(null);
+        job.setCompletedAt(now());
+        log.info("Detection job {} completed", job.getId());
+        return job;
+    }
+    
+    private DetectionJob failed(DetectionJob job, Throwable e) {
+        Throwable cause = Exceptions.unwrap(e);
+        job.setError(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+        if (!isRetryable(cause)) {
+            job.setStatus(DetectionJob.FAILED);
+            job.setCompletedAt(now());
+            log.error("Detection job {} failed on attempt {}, not retrying: {}", job.getId(), job.getAttempts(), job.getError());
+        } else if (job.getAttempts() < maxAttempts) {
+            job.setStatus(DetectionJob.QUEUED);
+            log.warn("Detection job {} failed on attempt {}, retrying: {}", job.getId(), job.getAttempts(), job.getError());
+        } else {
+            job.setStatus(DetectionJob.FAILED);
+            job.setCompletedAt(now());
+            log.error("Detection job {} failed after {} attempts: {}", job.getId(), job.getAttempts(), job.getError());
+        }
+        return job;
+    }
+    
+    /**
+     * Whether another attempt could succeed: FastAPI timing out, unreachable or failing with
+     * a 5xx, detection being too busy to admit the job, or a transient database failure.
+     * Anything else, such as a missing inspection, an unreadable image or a 4xx from
+     * FastAPI, fails the same way every time.
+     */
+    private static boolean isRetryable(Throwable e) {
+        return e instanceof TimeoutException
+                || e instanceof WebClientRequestException
+                || (e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError())
+                || e instanceof ServiceUnavailableException
+                || e instanceof TransientDataAccessException;
+    }
+    
+    private void record(DetectionJob job) {
+        publish(jobRepository.save(job));
+        if (DetectionJob.QUEUED.equals(job.getStatus())) {
+            // Only after the job is back to queued in the database, or the claim would miss it
+            retryScheduler.schedule(() -> dispatch(job), retryDelay.toMillis() * job.getAttempts(), TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Hand a queued job to its lane: batch jobs to the bounded batch pipeline, others to
+     * the worker pool
+     */
+    private void dispatch(DetectionJob job) {
+        if (job.getBatchId() == null) {
+            queue.add(job.getId());
+            return;
+        }
+        synchronized (batchLane) {
+            batchLane.emitNext(job.getId(), Sinks.EmitFailureHandler.FAIL_FAST);
+        }
+    }
+    
+    private void publish(DetectionJob job) {
+        List<SseEmitter> emitters = subscribers.get(job.getId());
+        if (emitters != null) {
+            emitters.forEach(emitter -> send(emitter, job));
+        }
+        if (isFinished(job)) {
+            subscribers.remove(job.getId());
+        }
+    }
+    
+    /**
+     * Drop a subscriber, and the job's entry once it has none left, so a job that finished
+     * while subscribing does not keep one
+     */
+    private void unsubscribe(Long id, SseEmitter emitter) {
+        subscribers.computeIfPresent(id, (key, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+    
+    private void send(SseEmitter emitter, DetectionJob job) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(mapToResponse(job)));
+            if (isFinished(job)) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter already completed
+            emitter.completeWithError(e);
+        }
+    }
+    
+    private static boolean isFinished(DetectionJob job) {
+        return DetectionJob.COMPLETED.equals(job.getStatus()) || DetectionJob.FAILED.equals(job.getStatus());
+    }
+    
+    private DetectionJob getJobEntity(Long id) {
+        return jobRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("DetectionJob", "id", id));
+    }
+    
+    /**
+     * Batch jobs are scheduled as bulk work, other jobs ahead of them
+     */
+    private static DetectionInput toInput(DetectionJob job) {
+        return DetectionInput.builder()
+                .transformerId(job.getTransformerId())
+                .baselineHash(job.getBaselineImageHash())
+                .maintenanceHash(job.getMaintenanceImageHash())
+                .sliderPercent(job.getSliderPercent())
+                .force(Boolean.TRUE.equals(job.getForce()))
+                .region(job.getRegion())
+                .priority(job.getBatchId() != null ? DetectionPriority.BULK : DetectionPriority.STANDARD)
+                .build();
+    }
+    
+    private DetectionJobResponse mapToResponse(DetectionJob job) {
+        return DetectionJobResponse.builder()
+                .id(job.getId())
+                .inspectionId(job.getInspectionId())
+                .status(job.getStatus())
+                .attempts(job.getAttempts())
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .completedAt(job.getCompletedAt())
+                .result(parseResult(job.getResult()))
+                .build();
+    }
+    
+    private AnomalyDetectionResponse parseResult(String result) {
+        if (result == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(result, AnomalyDetectionResponse.class);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse stored detection result", e);
+            return null;
+        }
+    }
+    
+    private static String now() {
+        return LocalDateTime.now().format(FORMATTER);
+    }
+}
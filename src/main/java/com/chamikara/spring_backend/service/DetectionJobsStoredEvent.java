@@ -0,0 +1,16 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.entity.DetectionJob;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published when detection jobs have been stored, within the transaction that stores
+ * them, so they are queued only once it commits
+ */
+@Value
+public class DetectionJobsStoredEvent {
+    
+    List<DetectionJob> jobs;
+}
@@ -0,0 +1,158 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.detection.AdaptiveConcurrencyLimit;
+import com.chamikara.spring_backend.detection.DetectionPriority;
+import com.chamikara.spring_backend.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Speculative detection of newly uploaded maintenance images, so the result is already
+ * cached when the inspector opens the inspection. Opt-in with
+ * {@code detection.prefetch.enabled}.
+ * <p>
+ * Prefetches yield to interactive detections: at most {@code max-concurrent} run at once,
+ * and each waits until FastAPI calls in flight are below {@code max-load} of the adaptive
+ * concurrency limit. A prefetch still waiting after {@code max-delay} is dropped, as is an
+ * upload arriving while {@code queue-capacity} prefetches are already queued. An
+ * interactive request for the same images while a prefetch is in flight joins its call.
+ */
+@Service
+@Slf4j
+public class DetectionPrefetchService {
+    
+    private static final Duration LOAD_POLL_INTERVAL = Duration.ofMillis(500);
+    
+    private final InspectionService inspectionService;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final double maxLoad;
+    private final Duration maxDelay;
+    private final Double sliderPercent;
+    
+    private final Sinks.Many<Long> lane;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private Disposable pipeline;
+    
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter dropped;
+    
+    public DetectionPrefetchService(
+            InspectionService inspectionService,
+            AnomalyDetectionService anomalyDetectionService,
+            AdaptiveConcurrencyLimit concurrencyLimit,
+            MeterRegistry meterRegistry,
+            @Value("${detection.prefetch.enabled:false}") boolean enabled,
+            @Value("${detection.prefetch.max-concurrent:1}") int maxConcurrent,
+            @Value("${detection.prefetch.max-load:0.5}") double maxLoad,
+            @Value("${detection.prefetch.max-delay:60s}") Duration maxDelay,
+            @Value("${detection.prefetch.queue-capacity:100}") int queueCapacity,
+            @Value("${detection.prefetch.slider-percent:#{null}}") Double sliderPercent) {
+        this.inspectionService = inspectionService;
+        this.anomalyDetectionService = anomalyDetectionService;
+        this.concurrencyLimit = concurrencyLimit;
+        this.enabled = enabled;
+        this.maxConcurrent = maxConcurrent;
+        this.maxLoad = maxLoad;
+        this.maxDelay = maxDelay;
+        this.sliderPercent = sliderPercent;
+        this.lane = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(queueCapacity));
+        this.completed = Counter.builder("detection.prefetch.requests").tag("result", "completed").register(meterRegistry);
+        this.failed = Counter.builder("detection.prefetch.requests").tag("result", "failed").register(meterRegistry);
+        this.dropped = Counter.builder("detection.prefetch.requests").tag("result", "dropped").register(meterRegistry);
+    }
+    
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        pipeline = lane.asFlux()
+                .flatMap(this::prefetch, maxConcurrent)
+                .subscribe();
+        log.info("Prefetching detections of uploaded maintenance images, {} at a time", maxConcurrent);
+    }
+    
+    @PreDestroy
+    void stop() {
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+    }
+    
+    /**
+     * Queue a prefetch once the upload is committed, so the detection sees the new image
+     */
+    @TransactionalEventListener
+    public void onMaintenanceImageUploaded(MaintenanceImageUploadedEvent event) {
+        if (!enabled || !queued.add(event.getInspectionId())) {
+            return;
+        }
+        Sinks.EmitResult result;
+        synchronized (lane) {
+            result = lane.tryEmitNext(event.getInspectionId());
+        }
+        if (result.isFailure()) {
+            queued.remove(event.getInspectionId());
+            dropped.increment();
+            log.debug("Prefetch queue is full, not prefetching detection of inspection {}", event.getInspectionId());
+        }
+    }
+    
+    /**
+     * Wait for spare capacity, then detect the inspection's current images. Never fails,
+     * so the lane keeps running.
+     */
+    private Mono<Void> prefetch(Long inspectionId) {
+        return Flux.interval(Duration.ZERO, LOAD_POLL_INTERVAL)
+                .filter(tick -> hasSpareCapacity())
+                .next()
+                .timeout(maxDelay, Mono.<Long>fromRunnable(() -> {
+                    dropped.increment();
+                    log.debug("FastAPI stayed busy, not prefetching detection of inspection {}", inspectionId);
+                }))
+                .doFinally(signal -> queued.remove(inspectionId))
+                .flatMap(tick -> Mono.fromCallable(() -> inspectionService.getDetectionInput(inspectionId))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(input -> anomalyDetectionService.detectAnomaliesAsync(
+                        input.toBuilder().sliderPercent(sliderPercent).priority(DetectionPriority.BULK).build()))
+                .doOnNext(response -> {
+                    completed.increment();
+                    log.debug("Prefetched detection of inspection {}", inspectionId);
+                })
+                .onErrorResume(e -> {
+                    if (e instanceof ResourceNotFoundException) {
+                        // E.g. the transformer has no baseline image yet
+                        log.debug("Not prefetching detection of inspection {}: {}", inspectionId, e.getMessage());
+                    } else {
+                        failed.increment();
+                        log.warn("Prefetching detection of inspection {} failed: {}", inspectionId, e.getMessage());
+                    }
+                    return Mono.empty();
+                })
+                .then();
+    }
+    
+    private boolean hasSpareCapacity() {
+        return concurrencyLimit.getInFlight() < concurrencyLimit.getLimit() * maxLoad;
+    }
+}
@@ -0,0 +1,204 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.exception.ServiceException;
+import com.chamikara.spring_backend.exception.ServiceUnavailableException;
+import com.chamikara.spring_backend.imaging.ImageCodec;
+import com.chamikara.spring_backend.imaging.ImageScaling;
+import com.chamikara.spring_backend.storage.ImageStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates downscaled variants (thumbnails, previews) of stored images.
+ * Variants are produced in the background when an image is ingested, on a small
+ * bounded pool so decoding large images cannot exhaust memory. A request that arrives
+ * before the background work has run waits for the same work on the same pool.
+ */
+@Service
+@Slf4j
+public class ImageDerivativeService {
+    
+    private final ImageStore imageStore;
+    private final Map<String, Integer> sizes;
+    private final int maxSize;
+    private final float jpegQuality;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    
+    public ImageDerivativeService(
+            ImageStore imageStore,
+            @Value("${image.derivatives.sizes:thumb:160,preview:640}") String sizes,
+            @Value("${image.derivatives.jpeg-quality:0.85}") float jpegQuality,
+            @Value("${image.derivatives.threads:2}") int threads,
+            @Value("${image.derivatives.queue-capacity:100}") int queueCapacity) {
+        this.imageStore = imageStore;
+        this.sizes = parseSizes(sizes);
+        this.maxSize = this.sizes.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        this.jpegQuality = jpegQuality;
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    public boolean isSupportedSize(String size) {
+        return sizes.containsKey(size);
+    }
+    
+    /**
+     * Queue generation of every configured variant. If the queue is full the work is
+     * dropped; the variants will be generated on first request instead.
+     */
+    public void scheduleDerivatives(String hash) {
+        if (sizes.isEmpty() || hasAllDerivatives(hash)) {
+            return;
+        }
+        ensureDerivatives(hash).exceptionally(e -> {
+            if (e instanceof RejectedExecutionException) {
+                log.debug("Derivative queue full, deferring variants of image {} to first request", hash);
+            } else {
+                log.warn("Background derivative generation failed for image {}", hash, e);
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Resolve the hash of a sized variant, generating it on the pool if necessary. The
+     * caller waits for the generation; when the queue is full it is rejected with
+     * {@link ServiceUnavailableException}.
+     */
+    public String getDerivative(String hash, String size) {
+        if (!isSupportedSize(size)) {
+            throw new IllegalArgumentException("Unknown image size '" + size + "'. Supported sizes: " + sizes.keySet());
+        }
+        return imageStore.findDerivative(hash, size).orElseGet(() -> {
+            try {
+                ensureDerivatives(hash).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    throw new ServiceUnavailableException("Too many image variants are being generated",
+                            Duration.ofSeconds(5));
+                }
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            return imageStore.findDerivative(hash, size)
+                    .orElseThrow(() -> new ServiceException("Failed to generate " + size + " variant of image " + hash));
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Generate all variants from a single decode on the pool. Concurrent callers for the
+     * same image share the first caller's work rather than decoding it again. The future
+     * fails with {@link RejectedExecutionException} when the queue is full.
+     */
+    private CompletableFuture<Void> ensureDerivatives(String hash) {
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(hash, mine);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(hash);
+                    mine.complete(null);
+                } catch (RuntimeException e) {
+                    mine.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(hash, mine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(hash, mine);
+            mine.completeExceptionally(e);
+        }
+        return mine;
+    }
+    
+    private void generate(String hash) {
+        if (hasAllDerivatives(hash)) {
+            return;
+        }
+        
+        // Decoded subsampled to no less than twice the largest variant, never at full size
+        ImageCodec.Decoded decoded;
+        try (InputStream in = imageStore.load(hash).getInputStream()) {
+            decoded = ImageCodec.decodeForFit(in, maxSize);
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read image " + hash, e);
+        }
+        
+        for (Map.Entry<String, Integer> size : sizes.entrySet()) {
+            String derivedHash;
+            if (decoded == null || decoded.image() == null
+                    || ImageScaling.fitScale(decoded.sourceWidth(), decoded.sourceHeight(), size.getValue()) >= 1.0) {
+                // Undecodable or already small enough: serve the original
+                derivedHash = hash;
+            } else {
+                derivedHash = storeJpeg(ImageScaling.fit(decoded.image(), size.getValue()));
+            }
+            imageStore.putDerivative(hash, size.getKey(), derivedHash);
+        }
+        log.debug("Generated {} variants for image {}", sizes.keySet(), hash);
+    }
+    
+    private String storeJpeg(BufferedImage image) {
+        try {
+            byte[] encoded = ImageCodec.encodeJpeg(image, jpegQuality);
+            return imageStore.store(new ByteArrayInputStream(encoded)).getHash();
+        } catch (IOException e) {
+            throw new ServiceException("Failed to encode image variant", e);
+        }
+    }
+    
+    private boolean hasAllDerivatives(String hash) {
+        return sizes.keySet().stream().allMatch(size -> imageStore.findDerivative(hash, size).isPresent());
+    }
+    
+    private static Map<String, Integer> parseSizes(String spec) {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid image.derivatives.sizes entry: " + entry);
+            }
+            sizes.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return Collections.unmodifiableMap(sizes);
+    }
+}
@@ -0,0 +1,102 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.exception.ResourceNotFoundException;
+import com.chamikara.spring_backend.exception.ServiceException;
+import com.chamikara.spring_backend.storage.Base64Images;
+import com.chamikara.spring_backend.storage.ImageContent;
+import com.chamikara.spring_backend.storage.ImageFormats;
+import com.chamikara.spring_backend.storage.ImageStore;
+import com.chamikara.spring_backend.storage.StoredImage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bridges entity image references and the {@link ImageStore}
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageService {
+    
+    private static final String ORIGINAL_SIZE = "original";
+    
+    private final ImageStore imageStore;
+    private final ImageDerivativeService imageDerivativeService;
+    private final PerceptualHashService perceptualHashService;
+    
+    /**
+     * Store a base64 encoded image (with or without data URI prefix)
+     *
+     * @return the image hash, or null if no image was supplied
+     */
+    public String storeBase64(String base64Image) {
+        if (base64Image == null || base64Image.isEmpty()) {
+            return null;
+        }
+        try (InputStream in = Base64Images.open(base64Image)) {
+            return store(in).getHash();
+        } catch (IOException e) {
+            throw new ServiceException("Failed to store image", e);
+        }
+    }
+    
+    /**
+     * Store an uploaded image part. The servlet container spools parts to disk,
+     * so the part is streamed into the store without being held in memory.
+     */
+    public StoredImage storeUpload(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Image file cannot be empty");
+        }
+        try (InputStream in = file.getInputStream()) {
+            return store(in);
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read uploaded image", e);
+        }
+    }
+    
+    /**
+     * Stream an image into the store, rejecting content that is not a recognised image format
+     */
+    public StoredImage store(InputStream data) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(data, ImageFormats.SIGNATURE_LENGTH);
+        in.mark(ImageFormats.SIGNATURE_LENGTH);
+        byte[] header = in.readNBytes(ImageFormats.SIGNATURE_LENGTH);
+        in.reset();
+        
+        if (!ImageFormats.isImage(ImageFormats.detectContentType(header, header.length))) {
+            throw new IllegalArgumentException("Unsupported image format");
+        }
+        StoredImage stored = imageStore.store(in);
+        imageDerivativeService.scheduleDerivatives(stored.getHash());
+        perceptualHashService.scheduleHash(stored.getHash());
+        return stored;
+    }
+    
+    /**
+     * Open a stored image, or one of its downscaled variants, for streaming to a client
+     *
+     * @param size variant name such as {@code thumb}; null or {@code original} for the full image
+     */
+    public ImageContent getImage(String hash, String size) {
+        if (size == null || size.isEmpty() || ORIGINAL_SIZE.equals(size)) {
+            return getImage(hash);
+        }
+        return getImage(imageDerivativeService.getDerivative(hash, size));
+    }
+    
+    /**
+     * Open a stored image for streaming to a client
+     */
+    public ImageContent getImage(String hash) {
+        StoredImage image = imageStore.find(hash)
+                .orElseThrow(() -> new ResourceNotFoundException("Image", "hash", hash));
+        return new ImageContent(image, imageStore.load(hash));
+    }
+}
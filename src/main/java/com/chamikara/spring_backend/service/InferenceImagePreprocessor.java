@@ -0,0 +1,249 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.exception.ServiceException;
+import com.chamikara.spring_backend.imaging.ImageCodec;
+import com.chamikara.spring_backend.imaging.ImageScaling;
+import com.chamikara.spring_backend.storage.ImageStore;
+import com.chamikara.spring_backend.storage.StoredImage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Shrinks images before they are sent to FastAPI. With {@code detection.preprocess.enabled},
+ * an image larger than {@code max-dimension} is downscaled to fit it and re-encoded as
+ * {@code format} without its metadata; a smaller one is only re-encoded if that makes it
+ * smaller. Anomaly boxes returned by FastAPI are then scaled back to the original image.
+ * <p>
+ * The prepared version of a stored image is kept in the image store as a variant of it,
+ * so each image is decoded once however often it is detected. Base64 images are prepared
+ * for every call. Decoding runs on a pool of {@code detection.preprocess.threads}, which
+ * bounds the memory held by decoded rasters.
+ */
+@Service
+@Slf4j
+public class InferenceImagePreprocessor {
+    
+    private final ImageStore imageStore;
+    private final boolean enabled;
+    private final int maxDimension;
+    private final String format;
+    private final float jpegQuality;
+    private final String variant;
+    private final Scheduler scheduler;
+    
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    
+    public InferenceImagePreprocessor(
+            ImageStore imageStore,
+            MeterRegistry meterRegistry,
+            @Value("${detection.preprocess.enabled:false}") boolean enabled,
+            @Value("${detection.preprocess.max-dimension:1024}") int maxDimension,
+            @Value("${detection.preprocess.format:png}") String format,
+            @Value("${detection.preprocess.jpeg-quality:0.92}") float jpegQuality,
+            @Value("${detection.preprocess.threads:2}") int threads,
+            @Value("${detection.preprocess.queue-capacity:100}") int queueCapacity) {
+        if (!List.of("png", "jpeg").contains(format)) {
+            throw new IllegalStateException("detection.preprocess.format must be png or jpeg");
+        }
+        this.imageStore = imageStore;
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.format = format;
+        this.jpegQuality = jpegQuality;
+        this.variant = "inference-" + maxDimension + "-" + format + ("jpeg".equals(format) ? "-" + jpegQuality : "");
+        this.scheduler = Schedulers.newBoundedElastic(threads, queueCapacity, "inference-preprocess");
+        
+        this.bytesIn = Counter.builder("detection.preprocess.bytes").tag("stage", "original").baseUnit("bytes")
+                .register(meterRegistry);
+        this.bytesOut = Counter.builder("detection.preprocess.bytes").tag("stage", "prepared").baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        scheduler.dispose();
+    }
+    
+    /**
+     * Identifies the preprocessing in detection cache keys, since FastAPI may detect
+     * differently on a downscaled image; empty while preprocessing is disabled
+     */
+    public String cacheTag() {
+        return enabled ? "+" + variant : "";
+    }
+    
+    /**
+     * Prepare a stored image, reusing the prepared variant from an earlier call
+     */
+    public Mono<PreparedImage> prepare(StoredImage image, Resource resource) {
+        if (!enabled) {
+            return Mono.just(PreparedImage.unchanged(resource, image.getContentType()));
+        }
+        return Mono.fromCallable(() -> imageStore.findDerivative(image.getHash(), variant)
+                        .map(derivedHash -> stored(image, resource, derivedHash))
+                        .orElseGet(() -> generate(image, resource)))
+                .subscribeOn(scheduler);
+    }
+    
+    /**
+     * Prepare an image that is not in the store
+     */
+    public Mono<PreparedImage> prepare(Resource resource, String contentType) {
+        if (!enabled) {
+            return Mono.just(PreparedImage.unchanged(resource, contentType));
+        }
+        return Mono.fromCallable(() -> {
+                    Prepared prepared = prepare(resource);
+                    if (prepared == null) {
+                        return PreparedImage.unchanged(resource, contentType);
+                    }
+                    return new PreparedImage(new ByteArrayResource(prepared.bytes()), prepared.contentType(),
+                            prepared.scaleX(), prepared.scaleY());
+                })
+                .subscribeOn(scheduler);
+    }
+    
+    /**
+     * Map a response for a prepared maintenance image back to the original image: boxes
+     * are divided by the scale the image was prepared at, and areas by its square
+     */
+    public static AnomalyDetectionResponse toOriginalScale(AnomalyDetectionResponse response, PreparedImage maintenance) {
+        if (!maintenance.isScaled() || response.getAnomalies() == null) {
+            return response;
+        }
+        double scaleX = maintenance.scaleX();
+        double scaleY = maintenance.scaleY();
+        return response.toBuilder()
+                .anomalies(response.getAnomalies().stream()
+                        .map(anomaly -> anomaly.toBuilder()
+                                .bbox(anomaly.getBbox() == null ? null : AnomalyDetectionResponse.BoundingBox.builder()
+                                        .x(unscale(anomaly.getBbox().getX(), scaleX))
+                                        .y(unscale(anomaly.getBbox().getY(), scaleY))
+                                        .width(unscale(anomaly.getBbox().getWidth(), scaleX))
+                                        .height(unscale(anomaly.getBbox().getHeight(), scaleY))
+                                        .build())
+                                .area(unscale(anomaly.getArea(), scaleX * scaleY))
+                                .build())
+                        .toList())
+                .build();
+    }
+    
+    private static Integer unscale(Integer value, double scale) {
+        return value == null ? null : (int) Math.round(value / scale);
+    }
+    
+    /**
+     * The prepared variant recorded earlier; its scale is recovered from the image headers
+     */
+    private PreparedImage stored(StoredImage image, Resource resource, String derivedHash) {
+        if (derivedHash.equals(image.getHash())) {
+            return PreparedImage.unchanged(resource, image.getContentType());
+        }
+        StoredImage derived = imageStore.find(derivedHash).orElse(null);
+        if (derived == null) {
+            // The variant file was removed; prepare the image again
+            return generate(image, resource);
+        }
+        Resource derivedResource = imageStore.load(derivedHash);
+        Dimension original = dimensions(resource);
+        Dimension prepared = dimensions(derivedResource);
+        if (original == null || prepared == null) {
+            return PreparedImage.unchanged(resource, image.getContentType());
+        }
+        return new PreparedImage(derivedResource, derived.getContentType(),
+                (double) prepared.width / original.width, (double) prepared.height / original.height);
+    }
+    
+    private PreparedImage generate(StoredImage image, Resource resource) {
+        Prepared prepared = prepare(resource);
+        if (prepared == null) {
+            imageStore.putDerivative(image.getHash(), variant, image.getHash());
+            return PreparedImage.unchanged(resource, image.getContentType());
+        }
+        StoredImage derived = imageStore.store(new ByteArrayInputStream(prepared.bytes()));
+        imageStore.putDerivative(image.getHash(), variant, derived.getHash());
+        log.debug("Prepared image {} for inference as {} ({} bytes)", image.getHash(), derived.getHash(), derived.getSize());
+        return new PreparedImage(imageStore.load(derived.getHash()), derived.getContentType(),
+                prepared.scaleX(), prepared.scaleY());
+    }
+    
+    /**
+     * @return the re-encoded image, or null if the original should be sent as it is
+     *         (undecodable, or small enough that re-encoding does not shrink it)
+     */
+    private Prepared prepare(Resource resource) {
+        long originalSize;
+        ImageCodec.Decoded decoded;
+        try (InputStream in = resource.getInputStream()) {
+            decoded = ImageCodec.decodeForFit(in, maxDimension);
+            originalSize = resource.contentLength();
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read image for inference", e);
+        }
+        if (decoded == null || decoded.image() == null) {
+            return null;
+        }
+        
+        boolean scaled = ImageScaling.fitScale(decoded.sourceWidth(), decoded.sourceHeight(), maxDimension) < 1.0;
+        BufferedImage image = scaled ? ImageScaling.fit(decoded.image(), maxDimension) : decoded.image();
+        byte[] encoded;
+        try {
+            encoded = "jpeg".equals(format) ? ImageCodec.encodeJpeg(image, jpegQuality) : ImageCodec.encodePng(image);
+        } catch (IOException e) {
+            throw new ServiceException("Failed to encode image for inference", e);
+        }
+        if (!scaled && encoded.length >= originalSize) {
+            return null;
+        }
+        
+        bytesIn.increment(originalSize);
+        bytesOut.increment(encoded.length);
+        return new Prepared(encoded, "jpeg".equals(format) ? MediaType.IMAGE_JPEG_VALUE : MediaType.IMAGE_PNG_VALUE,
+                (double) image.getWidth() / decoded.sourceWidth(), (double) image.getHeight() / decoded.sourceHeight());
+    }
+    
+    private static Dimension dimensions(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            return ImageCodec.dimensions(in);
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read image for inference", e);
+        }
+    }
+    
+    private record Prepared(byte[] bytes, String contentType, double scaleX, double scaleY) {
+    }
+    
+    /**
+     * An image ready to send to FastAPI, and the scale it was prepared at relative to the
+     * original (1 when it is sent as it is)
+     */
+    public record PreparedImage(Resource resource, String contentType, double scaleX, double scaleY) {
+        
+        static PreparedImage unchanged(Resource resource, String contentType) {
+            return new PreparedImage(resource, contentType, 1.0, 1.0);
+        }
+        
+        public boolean isScaled() {
+            return scaleX != 1.0 || scaleY != 1.0;
+        }
+    }
+}
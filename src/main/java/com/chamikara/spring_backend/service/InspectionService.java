@@ -1,15 +1,20 @@
 package com.chamikara.spring_backend.service;
 
+import com.chamikara.spring_backend.detection.DetectionInput;
 import com.chamikara.spring_backend.dto.request.InspectionRequest;
 import com.chamikara.spring_backend.dto.response.InspectionResponse;
 import com.chamikara.spring_backend.entity.Inspection;
 import com.chamikara.spring_backend.entity.Transformer;
 import com.chamikara.spring_backend.exception.ResourceNotFoundException;
 import com.chamikara.spring_backend.repository.InspectionRepository;
+import com.chamikara.spring_backend.repository.projection.InspectionSummary;
+import com.chamikara.spring_backend.storage.StoredImage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -22,10 +27,12 @@ public class InspectionService {
     
     private final InspectionRepository inspectionRepository;
     private final TransformerService transformerService;
+    private final ImageService imageService;
+    private final ApplicationEventPublisher eventPublisher;
     
     public List<InspectionResponse> getAllInspections() {
         log.debug("Fetching all inspections");
-        return inspectionRepository.findAllWithTransformer().stream()
+        return inspectionRepository.findAllSummaries().stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
@@ -39,7 +46,7 @@ public class InspectionService {
     
     public List<InspectionResponse> getInspectionsByTransformerId(Long transformerId) {
         log.debug("Fetching inspections for transformer: {}", transformerId);
-        return inspectionRepository.findByTransformerIdOrderByDateDesc(transformerId).stream()
+        return inspectionRepository.findSummariesByTransformerId(transformerId).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
@@ -56,15 +63,17 @@ public class InspectionService {
                 .inspector(request.getInspector())
                 .notes(request.getNotes())
                 .status(request.getStatus() != null ? request.getStatus() : "Pending")
-                .maintenanceImage(request.getMaintenanceImage())
+                .maintenanceImageHash(imageService.storeBase64(request.getMaintenanceImage()))
                 .maintenanceUploadDate(request.getMaintenanceUploadDate())
                 .maintenanceWeather(request.getMaintenanceWeather())
-                .annotatedImage(request.getAnnotatedImage())
                 .anomalies(request.getAnomalies())
                 .progressStatus(request.getProgressStatus())
                 .build();
         
         Inspection saved = inspectionRepository.save(inspection);
+        if (saved.getMaintenanceImageHash() != null) {
+            publishMaintenanceImage(saved);
+        }
         log.info("Created inspection with id: {}", saved.getId());
         return mapToResponse(saved);
     }
@@ -86,18 +95,38 @@ public class InspectionService {
         if (request.getInspector() != null) inspection.setInspector(request.getInspector());
         if (request.getNotes() != null) inspection.setNotes(request.getNotes());
         if (request.getStatus() != null) inspection.setStatus(request.getStatus());
-        if (request.getMaintenanceImage() != null) inspection.setMaintenanceImage(request.getMaintenanceImage());
+        if (request.getMaintenanceImage() != null) inspection.setMaintenanceImageHash(imageService.storeBase64(request.getMaintenanceImage()));
         if (request.getMaintenanceUploadDate() != null) inspection.setMaintenanceUploadDate(request.getMaintenanceUploadDate());
         if (request.getMaintenanceWeather() != null) inspection.setMaintenanceWeather(request.getMaintenanceWeather());
-        if (request.getAnnotatedImage() != null) inspection.setAnnotatedImage(request.getAnnotatedImage());
         if (request.getAnomalies() != null) inspection.setAnomalies(request.getAnomalies());
         if (request.getProgressStatus() != null) inspection.setProgressStatus(request.getProgressStatus());
         
         Inspection updated = inspectionRepository.save(inspection);
+        if (request.getMaintenanceImage() != null) {
+            publishMaintenanceImage(updated);
+        }
         log.info("Updated inspection with id: {}", id);
         return mapToResponse(updated);
     }
     
+    public InspectionResponse uploadMaintenanceImage(Long id, MultipartFile file,
+                                                     String uploadDate, String weather) {
+        log.debug("Uploading maintenance image for inspection: {}", id);
+        
+        Inspection inspection = inspectionRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Inspection", "id", id));
+        
+        StoredImage stored = imageService.storeUpload(file);
+        inspection.setMaintenanceImageHash(stored.getHash());
+        if (uploadDate != null) inspection.setMaintenanceUploadDate(uploadDate);
+        if (weather != null) inspection.setMaintenanceWeather(weather);
+        
+        Inspection updated = inspectionRepository.save(inspection);
+        publishMaintenanceImage(updated);
+        log.info("Uploaded maintenance image {} ({} bytes) for inspection: {}", stored.getHash(), stored.getSize(), id);
+        return mapToResponse(updated);
+    }
+    
     public void deleteInspection(Long id) {
         log.debug("Deleting inspection with id: {}", id);
         
@@ -114,6 +143,48 @@ public class InspectionService {
                 .orElseThrow(() -> new ResourceNotFoundException("Inspection", "id", id));
     }
     
+    public String getMaintenanceImageHash(Long id) {
+        String hash = getInspectionEntity(id).getMaintenanceImageHash();
+        if (hash == null) {
+            throw new ResourceNotFoundException("Maintenance image", "inspectionId", id);
+        }
+        return hash;
+    }
+    
+    /**
+     * @return the baseline image hash of the inspection's transformer, or null if it has none
+     */
+    @Transactional(readOnly = true)
+    public String getBaselineImageHash(Long id) {
+        return getInspectionEntity(id).getTransformer().getBaselineImageHash();
+    }
+    
+    /**
+     * Resolve the image pair compared by anomaly detection: the transformer's baseline
+     * image and the inspection's maintenance image
+     */
+    @Transactional(readOnly = true)
+    public DetectionInput getDetectionInput(Long id) {
+        Inspection inspection = getInspectionEntity(id);
+        Transformer transformer = inspection.getTransformer();
+        if (transformer.getBaselineImageHash() == null) {
+            throw new ResourceNotFoundException("Baseline image", "transformerId", transformer.getId());
+        }
+        if (inspection.getMaintenanceImageHash() == null) {
+            throw new ResourceNotFoundException("Maintenance image", "inspectionId", id);
+        }
+        return DetectionInput.builder()
+                .transformerId(transformer.getNumber())
+                .baselineHash(transformer.getBaselineImageHash())
+                .maintenanceHash(inspection.getMaintenanceImageHash())
+                .region(transformer.getRegion())
+                .build();
+    }
+    
+    private void publishMaintenanceImage(Inspection inspection) {
+        eventPublisher.publishEvent(new MaintenanceImageUploadedEvent(inspection.getId(), inspection.getMaintenanceImageHash()));
+    }
+    
     private InspectionResponse mapToResponse(Inspection inspection) {
         return InspectionResponse.builder()
                 .id(inspection.getId())
@@ -124,12 +195,47 @@ public class InspectionService {
                 .inspector(inspection.getInspector())
                 .notes(inspection.getNotes())
                 .status(inspection.getStatus())
-                .maintenanceImage(inspection.getMaintenanceImage())
+                .maintenanceImageHash(inspection.getMaintenanceImageHash())
+                .maintenanceImageUrl(imageUrl(inspection.getId(), "maintenance", inspection.getMaintenanceImageHash()))
                 .maintenanceUploadDate(inspection.getMaintenanceUploadDate())
                 .maintenanceWeather(inspection.getMaintenanceWeather())
-                .annotatedImage(inspection.getAnnotatedImage())
+                .annotatedImageUrl(imageUrl(inspection.getId(), "annotated", inspection.getMaintenanceImageHash()))
+                .legacyAnnotatedImageUrl(storedImageUrl(inspection.getLegacyAnnotatedImageHash()))
                 .anomalies(inspection.getAnomalies())
                 .progressStatus(inspection.getProgressStatus())
                 .build();
     }
+    
+    private InspectionResponse mapToResponse(InspectionSummary summary) {
+        return InspectionResponse.builder()
+                .id(summary.getId())
+                .transformerId(summary.getTransformerId())
+                .transformerNumber(summary.getTransformerNumber())
+                .date(summary.getDate())
+                .inspectedDate(summary.getInspectedDate())
+                .inspector(summary.getInspector())
+                .notes(summary.getNotes())
+                .status(summary.getStatus())
+                .maintenanceImageHash(summary.getMaintenanceImageHash())
+                .maintenanceImageUrl(imageUrl(summary.getId(), "maintenance", summary.getMaintenanceImageHash()))
+                .maintenanceUploadDate(summary.getMaintenanceUploadDate())
+                .maintenanceWeather(summary.getMaintenanceWeather())
+                .annotatedImageUrl(imageUrl(summary.getId(), "annotated", summary.getMaintenanceImageHash()))
+                .legacyAnnotatedImageUrl(storedImageUrl(summary.getLegacyAnnotatedImageHash()))
+                .anomalies(summary.getAnomalies())
+                .progressStatus(summary.getProgressStatus())
+                .build();
+    }
+    
+    /**
+     * Annotated images are rendered from the maintenance image, so both URLs are
+     * available as soon as a maintenance image exists
+     */
+    private String imageUrl(Long id, String kind, String hash) {
+        return hash != null ? "/inspections/" + id + "/images/" + kind : null;
+    }
+    
+    private static String storedImageUrl(String hash) {
+        return hash != null ? "/images/" + hash : null;
+    }
 }
@@ -0,0 +1,14 @@
+package com.chamikara.spring_backend.service;
+
+import lombok.Value;
+
+/**
+ * Published when an inspection gets a new maintenance image, within the transaction
+ * that stores it
+ */
+@Value
+public class MaintenanceImageUploadedEvent {
+    
+    Long inspectionId;
+    String maintenanceImageHash;
+}
@@ -8,11 +8,13 @@ import com.chamikara.spring_backend.entity.Transformer;
 import com.chamikara.spring_backend.exception.ResourceNotFoundException;
 import com.chamikara.spring_backend.repository.MaintenanceRecordRepository;
 import com.chamikara.spring_backend.repository.InspectionRepository;
+import com.chamikara.spring_backend.repository.projection.MaintenanceRecordSummary;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.awt.Color;
@@ -31,12 +33,13 @@ public class MaintenanceRecordService {
     private final MaintenanceRecordRepository maintenanceRecordRepository;
     private final InspectionRepository inspectionRepository;
     private final TransformerService transformerService;
+    private final AnnotatedImageService annotatedImageService;
     
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
     
     public List<MaintenanceRecordResponse> getAllRecords() {
         log.debug("Fetching all maintenance records");
-        return maintenanceRecordRepository.findAllWithTransformer().stream()
+        return maintenanceRecordRepository.findAllSummaries().stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
@@ -50,11 +53,14 @@ public class MaintenanceRecordService {
     
     public List<MaintenanceRecordResponse> getRecordsByTransformerId(Long transformerId) {
         log.debug("Fetching maintenance records for transformer: {}", transformerId);
-        return maintenanceRecordRepository.findByTransformerIdOrderByTimestampDesc(transformerId).stream()
+        return maintenanceRecordRepository.findSummariesByTransformerId(transformerId).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
     
+    // Runs without a transaction so no connection is held while the annotated image renders;
+    // the repository calls each run in their own
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public MaintenanceRecordResponse createRecord(MaintenanceRecordRequest request) {
         log.debug("Creating new maintenance record for transformer: {}", request.getTransformerId());
         
@@ -75,7 +81,7 @@ public class MaintenanceRecordService {
                 .readings(request.getReadings())
                 .recommendedAction(request.getRecommendedAction())
                 .notes(request.getNotes())
-                .annotatedImage(request.getAnnotatedImage())
+                .annotatedImageHash(snapshotAnnotatedImage(inspection))
                 .anomalies(request.getAnomalies())
                 .location(request.getLocation() != null ? request.getLocation() : transformer.getLocation())
                 .createdAt(now)
@@ -100,7 +106,6 @@ public class MaintenanceRecordService {
         if (request.getReadings() != null) record.setReadings(request.getReadings());
         if (request.getRecommendedAction() != null) record.setRecommendedAction(request.getRecommendedAction());
         if (request.getNotes() != null) record.setNotes(request.getNotes());
-        if (request.getAnnotatedImage() != null) record.setAnnotatedImage(request.getAnnotatedImage());
         if (request.getAnomalies() != null) record.setAnomalies(request.getAnomalies());
         if (request.getLocation() != null) record.setLocation(request.getLocation());
         record.setUpdatedAt(now);
@@ -121,6 +126,34 @@ public class MaintenanceRecordService {
         log.info("Deleted maintenance record with id: {}", id);
     }
     
+    public String getAnnotatedImageHash(Long id) {
+        MaintenanceRecord record = maintenanceRecordRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("MaintenanceRecord", "id", id));
+        if (record.getAnnotatedImageHash() == null) {
+            throw new ResourceNotFoundException("Annotated image", "recordId", id);
+        }
+        return record.getAnnotatedImageHash();
+    }
+    
+    /**
+     * Reference the inspection's current annotated render. The render lives in the
+     * content-addressed image store, so the record shares it rather than copying it.
+     * The render is only a picture of the annotations, so if it cannot be produced the
+     * record is saved without one.
+     */
+    private String snapshotAnnotatedImage(Inspection inspection) {
+        if (inspection == null || inspection.getMaintenanceImageHash() == null) {
+            return null;
+        }
+        try {
+            return annotatedImageService.getAnnotatedImageHash(inspection.getId());
+        } catch (RuntimeException e) {
+            log.warn("Saving maintenance record without an annotated image, rendering inspection {} failed",
+                    inspection.getId(), e);
+            return null;
+        }
+    }
+    
     public byte[] exportToPdf(Long id) {
         log.debug("Exporting maintenance record to PDF: {}", id);
         
@@ -206,7 +239,7 @@ public class MaintenanceRecordService {
             
             log.info("Generated PDF for maintenance record: {}", id);
             return baos.toByteArray();
-            
+        
         } catch (Exception e) {
             log.error("Failed to generate PDF for maintenance record: {}", id, e);
             throw new RuntimeException("Failed to generate PDF", e);
@@ -239,11 +272,37 @@ public class MaintenanceRecordService {
                 .readings(record.getReadings())
                 .recommendedAction(record.getRecommendedAction())
                 .notes(record.getNotes())
-                .annotatedImage(record.getAnnotatedImage())
+                .annotatedImageHash(record.getAnnotatedImageHash())
+                .annotatedImageUrl(annotatedImageUrl(record.getId(), record.getAnnotatedImageHash()))
                 .anomalies(record.getAnomalies())
                 .location(record.getLocation())
                 .createdAt(record.getCreatedAt())
                 .updatedAt(record.getUpdatedAt())
                 .build();
     }
+    
+    private MaintenanceRecordResponse mapToResponse(MaintenanceRecordSummary summary) {
+        return MaintenanceRecordResponse.builder()
+                .id(summary.getId())
+                .transformerId(summary.getTransformerId())
+                .transformerNumber(summary.getTransformerNumber())
+                .inspectionId(summary.getInspectionId())
+                .recordTimestamp(summary.getRecordTimestamp())
+                .engineerName(summary.getEngineerName())
+                .status(summary.getStatus())
+                .readings(summary.getReadings())
+                .recommendedAction(summary.getRecommendedAction())
+                .notes(summary.getNotes())
+                .annotatedImageHash(summary.getAnnotatedImageHash())
+                .annotatedImageUrl(annotatedImageUrl(summary.getId(), summary.getAnnotatedImageHash()))
+                .anomalies(summary.getAnomalies())
+                .location(summary.getLocation())
+                .createdAt(summary.getCreatedAt())
+                .updatedAt(summary.getUpdatedAt())
+                .build();
+    }
+    
+    private String annotatedImageUrl(Long id, String hash) {
+        return hash != null ? "/records/" + id + "/images/annotated" : null;
+    }
 }
@@ -0,0 +1,172 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.entity.ImageFingerprint;
+import com.chamikara.spring_backend.exception.ServiceException;
+import com.chamikara.spring_backend.imaging.ImageCodec;
+import com.chamikara.spring_backend.imaging.PerceptualHash;
+import com.chamikara.spring_backend.repository.ImageFingerprintRepository;
+import com.chamikara.spring_backend.storage.ImageStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.OptionalInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Perceptual hashes of images, used to tell when a maintenance image looks the same as its
+ * baseline. Stored images are hashed in the background when they are ingested, on a small
+ * bounded pool, and the hash is kept in {@code image_fingerprints}. An image hashed before
+ * then, or dropped from a full queue, is hashed on first use instead.
+ * <p>
+ * Disabled by default: the hash compares mean brightness of neighbouring cells of a 9x8
+ * grid, so a new hotspot inside one cell changes at most 2 bits and is not seen as a change.
+ */
+@Service
+@Slf4j
+public class PerceptualHashService {
+    
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    
+    // Images are decoded at no more than about twice this size before hashing
+    private static final int HASH_INPUT_DIMENSION = 128;
+    
+    private final ImageStore imageStore;
+    private final ImageFingerprintRepository fingerprintRepository;
+    private final boolean enabled;
+    private final int maxDistance;
+    private final ThreadPoolExecutor executor;
+    
+    public PerceptualHashService(
+            ImageStore imageStore,
+            ImageFingerprintRepository fingerprintRepository,
+            @Value("${detection.prefilter.enabled:false}") boolean enabled,
+            @Value("${detection.prefilter.max-distance:4}") int maxDistance,
+            @Value("${detection.prefilter.threads:1}") int threads,
+            @Value("${detection.prefilter.queue-capacity:100}") int queueCapacity) {
+        this.imageStore = imageStore;
+        this.fingerprintRepository = fingerprintRepository;
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "perceptual-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Queue hashing of a newly stored image. If the queue is full the work is dropped; the
+     * image is hashed when it is first compared instead.
+     */
+    public void scheduleHash(String imageHash) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    getHash(imageHash);
+                } catch (RuntimeException e) {
+                    log.warn("Background perceptual hashing failed for image {}", imageHash, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Perceptual hash queue full, deferring image {} to first comparison", imageHash);
+        }
+    }
+    
+    /**
+     * Distance between two stored images if they look unchanged, that is at most
+     * {@code detection.prefilter.max-distance} bits apart
+     *
+     * @return the distance, or empty if the images differ or either could not be hashed
+     */
+    public OptionalInt unchangedDistance(String baselineHash, String maintenanceHash) {
+        if (baselineHash.equals(maintenanceHash)) {
+            return OptionalInt.of(0);
+        }
+        Long baseline = getHash(baselineHash);
+        Long maintenance = baseline != null ? getHash(maintenanceHash) : null;
+        return unchanged(baseline, maintenance);
+    }
+    
+    /**
+     * Distance between two images that are not in the store if they look unchanged
+     */
+    public OptionalInt unchangedDistance(Resource baselineImage, Resource maintenanceImage) {
+        Long baseline = hash(baselineImage);
+        Long maintenance = baseline != null ? hash(maintenanceImage) : null;
+        return unchanged(baseline, maintenance);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private OptionalInt unchanged(Long baseline, Long maintenance) {
+        if (baseline == null || maintenance == null) {
+            return OptionalInt.empty();
+        }
+        int distance = PerceptualHash.distance(baseline, maintenance);
+        return distance <= maxDistance ? OptionalInt.of(distance) : OptionalInt.empty();
+    }
+    
+    /**
+     * The stored hash of an image, computing and storing it if needed
+     *
+     * @return the hash, or null if the image cannot be decoded
+     */
+    private Long getHash(String imageHash) {
+        return fingerprintRepository.findById(imageHash)
+                .map(ImageFingerprint::getDifferenceHash)
+                .orElseGet(() -> {
+                    Long hash = hash(imageStore.load(imageHash));
+                    if (hash != null) {
+                        save(imageHash, hash);
+                    }
+                    return hash;
+                });
+    }
+    
+    private void save(String imageHash, long hash) {
+        try {
+            fingerprintRepository.save(ImageFingerprint.builder()
+                    .imageHash(imageHash)
+                    .differenceHash(hash)
+                    .createdAt(LocalDateTime.now().format(FORMATTER))
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Hashed concurrently by another caller; the hash is the same
+            log.debug("Perceptual hash of image {} already stored", imageHash);
+        }
+    }
+    
+    private static Long hash(Resource image) {
+        try (InputStream in = image.getInputStream()) {
+            ImageCodec.Decoded decoded = ImageCodec.decodeForFit(in, HASH_INPUT_DIMENSION);
+            return decoded != null && decoded.image() != null ? PerceptualHash.dHash(decoded.image()) : null;
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read image for perceptual hashing", e);
+        }
+    }
+}
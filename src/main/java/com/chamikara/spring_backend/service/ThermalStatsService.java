@@ -0,0 +1,286 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.dto.response.ThermalStatsResponse;
+import com.chamikara.spring_backend.exception.ServiceException;
+import com.chamikara.spring_backend.exception.ServiceUnavailableException;
+import com.chamikara.spring_backend.imaging.ImageCodec;
+import com.chamikara.spring_backend.imaging.ImageScaling;
+import com.chamikara.spring_backend.imaging.ThermalStatistics;
+import com.chamikara.spring_backend.storage.ImageStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thermal statistics of inspections for triage without calling FastAPI: per-tile intensity
+ * histograms, maxima and means, and the difference to the transformer's baseline image.
+ * The maintenance image is decoded once, at no more than {@code thermal.stats.max-dimension},
+ * and its tiles are computed in parallel on a pool of {@code thermal.stats.parallelism}.
+ * The baseline is resized to the same size; the images are compared pixel by pixel without
+ * aligning them, so the difference is only meaningful for images taken from the same spot.
+ * <p>
+ * Results are cached in memory by the hashes of the image pair, so the statistics of an
+ * image are computed once however many inspections or requests ask for them. Cache misses
+ * are computed on {@code thermal.stats.threads} with a bounded queue, so only that many
+ * images are decoded at once, and concurrent requests for the same pair wait for a single
+ * computation.
+ */
+@Service
+@Slf4j
+public class ThermalStatsService {
+    
+    private final ImageStore imageStore;
+    private final InspectionService inspectionService;
+    private final int maxDimension;
+    private final int tileSize;
+    private final int histogramBins;
+    private final int hotspotCount;
+    private final int maxEntries;
+    private final ForkJoinPool pool;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<ThermalStatsResponse>> inFlight = new ConcurrentHashMap<>();
+    
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, ThermalStatsResponse> cache = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer computeTime;
+    
+    public ThermalStatsService(
+            ImageStore imageStore,
+            InspectionService inspectionService,
+            MeterRegistry meterRegistry,
+            @Value("${thermal.stats.max-dimension:2048}") int maxDimension,
+            @Value("${thermal.stats.tile-size:64}") int tileSize,
+            @Value("${thermal.stats.histogram-bins:16}") int histogramBins,
+            @Value("${thermal.stats.hotspots:5}") int hotspotCount,
+            @Value("${thermal.stats.parallelism:0}") int parallelism,
+            @Value("${thermal.stats.threads:2}") int threads,
+            @Value("${thermal.stats.queue-capacity:20}") int queueCapacity,
+            @Value("${thermal.stats.cache.max-entries:200}") int maxEntries) {
+        if (histogramBins < 1 || histogramBins > 256) {
+            throw new IllegalStateException("thermal.stats.histogram-bins must be between 1 and 256");
+        }
+        if (tileSize < 1) {
+            throw new IllegalStateException("thermal.stats.tile-size must be positive");
+        }
+        this.imageStore = imageStore;
+        this.inspectionService = inspectionService;
+        this.maxDimension = maxDimension;
+        this.tileSize = tileSize;
+        this.histogramBins = histogramBins;
+        this.hotspotCount = hotspotCount;
+        this.maxEntries = maxEntries;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "thermal-stats-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        
+        this.hits = Counter.builder("thermal.stats.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("thermal.stats.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.computeTime = Timer.builder("thermal.stats.duration")
+                .description("Time to decode an inspection's images and compute their statistics")
+                .register(meterRegistry);
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        pool.shutdownNow();
+    }
+    
+    public ThermalStatsResponse getThermalStats(Long inspectionId) {
+        String maintenanceHash = inspectionService.getMaintenanceImageHash(inspectionId);
+        String baselineHash = inspectionService.getBaselineImageHash(inspectionId);
+        String key = maintenanceHash + ":" + (baselineHash != null ? baselineHash : "");
+        
+        ThermalStatsResponse stats = cached(key);
+        if (stats != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            stats = join(computeOnce(key, maintenanceHash, baselineHash));
+        }
+        return stats.toBuilder().inspectionId(inspectionId).build();
+    }
+    
+    /**
+     * Compute the statistics of an image pair on the executor, or share a computation of
+     * the same pair already under way
+     */
+    private CompletableFuture<ThermalStatsResponse> computeOnce(String key, String maintenanceHash, String baselineHash) {
+        CompletableFuture<ThermalStatsResponse> mine = new CompletableFuture<>();
+        CompletableFuture<ThermalStatsResponse> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    // Another request may have finished the same pair just before this one started
+                    ThermalStatsResponse stats = cached(key);
+                    if (stats == null) {
+                        stats = computeTime.record(() -> compute(maintenanceHash, baselineHash));
+                        put(key, stats);
+                    }
+                    mine.complete(stats);
+                } catch (RuntimeException e) {
+                    mine.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(new ServiceUnavailableException(
+                    "Too many thermal statistics are being computed", Duration.ofSeconds(5)));
+        }
+        return mine;
+    }
+    
+    private static ThermalStatsResponse join(CompletableFuture<ThermalStatsResponse> stats) {
+        try {
+            return stats.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    private synchronized ThermalStatsResponse cached(String key) {
+        return cache.get(key);
+    }
+    
+    private synchronized void put(String key, ThermalStatsResponse stats) {
+        cache.put(key, stats);
+        Iterator<Map.Entry<String, ThermalStatsResponse>> iterator = cache.entrySet().iterator();
+        while (cache.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+    
+    private ThermalStatsResponse compute(String maintenanceHash, String baselineHash) {
+        ImageCodec.Decoded decoded = decode(maintenanceHash);
+        if (decoded == null) {
+            throw new ServiceException("Maintenance image " + maintenanceHash + " could not be decoded");
+        }
+        BufferedImage image = ImageScaling.fit(decoded.image(), maxDimension);
+        
+        BufferedImage baseline = null;
+        if (baselineHash != null) {
+            ImageCodec.Decoded decodedBaseline = decode(baselineHash);
+            if (decodedBaseline != null) {
+                baseline = ImageScaling.scaleTo(decodedBaseline.image(), image.getWidth(), image.getHeight());
+            } else {
+                log.warn("Baseline image {} could not be decoded, computing thermal statistics without it", baselineHash);
+            }
+        }
+        
+        ThermalStatistics statistics = ThermalStatistics.compute(image, baseline, tileSize, histogramBins, pool);
+        log.debug("Computed thermal statistics of image {} at {}x{} ({} tiles)", maintenanceHash,
+                image.getWidth(), image.getHeight(), statistics.getTileCount());
+        return toResponse(statistics, decoded, maintenanceHash, baseline != null ? baselineHash : null);
+    }
+    
+    private ImageCodec.Decoded decode(String imageHash) {
+        try (InputStream in = imageStore.load(imageHash).getInputStream()) {
+            ImageCodec.Decoded decoded = ImageCodec.decodeForFit(in, maxDimension);
+            return decoded != null && decoded.image() != null ? decoded : null;
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read image for thermal statistics", e);
+        }
+    }
+    
+    /**
+     * Map the statistics of the analysed image back to the original image's pixels
+     */
+    private ThermalStatsResponse toResponse(ThermalStatistics statistics, ImageCodec.Decoded decoded,
+                                            String maintenanceHash, String baselineHash) {
+        double scaleX = (double) decoded.sourceWidth() / statistics.getWidth();
+        double scaleY = (double) decoded.sourceHeight() / statistics.getHeight();
+        
+        List<ThermalStatsResponse.Tile> tiles = new ArrayList<>(statistics.getTileCount());
+        for (int tile = 0; tile < statistics.getTileCount(); tile++) {
+            int x = statistics.tileX(tile);
+            int y = statistics.tileY(tile);
+            tiles.add(ThermalStatsResponse.Tile.builder()
+                    .row(tile / statistics.getColumns())
+                    .column(tile % statistics.getColumns())
+                    .x(scale(x, scaleX))
+                    .y(scale(y, scaleY))
+                    .width(scale(x + statistics.tileWidth(tile), scaleX) - scale(x, scaleX))
+                    .height(scale(y + statistics.tileHeight(tile), scaleY) - scale(y, scaleY))
+                    .histogram(statistics.histogram(tile))
+                    .maxIntensity(statistics.max(tile))
+                    .meanIntensity(statistics.mean(tile))
+                    .hottestPixel(point(statistics.maxX(tile), statistics.maxY(tile), scaleX, scaleY))
+                    .meanDifference(statistics.hasBaseline() ? statistics.meanDifference(tile) : null)
+                    .maxDifference(statistics.hasBaseline() ? statistics.maxDifference(tile) : null)
+                    .build());
+        }
+        
+        int hottest = statistics.hottestTile();
+        return ThermalStatsResponse.builder()
+                .maintenanceImageHash(maintenanceHash)
+                .baselineImageHash(baselineHash)
+                .width(decoded.sourceWidth())
+                .height(decoded.sourceHeight())
+                .analysedWidth(statistics.getWidth())
+                .analysedHeight(statistics.getHeight())
+                .columns(statistics.getColumns())
+                .rows(statistics.getRows())
+                .histogram(statistics.histogram())
+                .maxIntensity(statistics.max(hottest))
+                .meanIntensity(statistics.mean())
+                .meanDifference(statistics.hasBaseline() ? statistics.meanDifference() : null)
+                .hottestPixel(point(statistics.maxX(hottest), statistics.maxY(hottest), scaleX, scaleY))
+                .hotspots(tiles.stream()
+                        .sorted(Comparator.comparing(ThermalStatsResponse.Tile::getMaxIntensity).reversed()
+                                .thenComparing(Comparator.comparing(ThermalStatsResponse.Tile::getMeanIntensity).reversed()))
+                        .limit(hotspotCount)
+                        .toList())
+                .tiles(tiles)
+                .build();
+    }
+    
+    private static ThermalStatsResponse.Point point(int x, int y, double scaleX, double scaleY) {
+        return ThermalStatsResponse.Point.builder().x(scale(x, scaleX)).y(scale(y, scaleY)).build();
+    }
+    
+    private static int scale(int value, double scale) {
+        return (int) Math.round(value * scale);
+    }
+}
@@ -6,10 +6,13 @@ import com.chamikara.spring_backend.entity.Transformer;
 import com.chamikara.spring_backend.exception.ResourceNotFoundException;
 import com.chamikara.spring_backend.exception.DuplicateResourceException;
 import com.chamikara.spring_backend.repository.TransformerRepository;
+import com.chamikara.spring_backend.repository.projection.TransformerSummary;
+import com.chamikara.spring_backend.storage.StoredImage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,10 +24,11 @@ import java.util.stream.Collectors;
 public class TransformerService {
     
     private final TransformerRepository transformerRepository;
+    private final ImageService imageService;
     
     public List<TransformerResponse> getAllTransformers() {
         log.debug("Fetching all transformers");
-        return transformerRepository.findAll().stream()
+        return transformerRepository.findAllSummaries().stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
@@ -48,7 +52,7 @@ public class TransformerService {
                 .pole(request.getPole())
                 .region(request.getRegion())
                 .type(request.getType())
-                .baselineImage(request.getBaselineImage())
+                .baselineImageHash(imageService.storeBase64(request.getBaselineImage()))
                 .baselineUploadDate(request.getBaselineUploadDate())
                 .weather(request.getWeather())
                 .location(request.getLocation())
@@ -75,7 +79,9 @@ public class TransformerService {
         transformer.setPole(request.getPole());
         transformer.setRegion(request.getRegion());
         transformer.setType(request.getType());
-        transformer.setBaselineImage(request.getBaselineImage());
+        if (request.getBaselineImage() != null) {
+            transformer.setBaselineImageHash(imageService.storeBase64(request.getBaselineImage()));
+        }
         transformer.setBaselineUploadDate(request.getBaselineUploadDate());
         transformer.setWeather(request.getWeather());
         transformer.setLocation(request.getLocation());
@@ -85,6 +91,21 @@ public class TransformerService {
         return mapToResponse(updated);
     }
     
+    public TransformerResponse uploadBaselineImage(Long id, MultipartFile file, String uploadDate) {
+        log.debug("Uploading baseline image for transformer: {}", id);
+        
+        Transformer transformer = transformerRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Transformer", "id", id));
+        
+        StoredImage stored = imageService.storeUpload(file);
+        transformer.setBaselineImageHash(stored.getHash());
+        if (uploadDate != null) transformer.setBaselineUploadDate(uploadDate);
+        
+        Transformer updated = transformerRepository.save(transformer);
+        log.info("Uploaded baseline image {} ({} bytes) for transformer: {}", stored.getHash(), stored.getSize(), id);
+        return mapToResponse(updated);
+    }
+    
     public void deleteTransformer(Long id) {
         log.debug("Deleting transformer with id: {}", id);
         
@@ -101,6 +122,14 @@ public class TransformerService {
                 .orElseThrow(() -> new ResourceNotFoundException("Transformer", "id", id));
     }
     
+    public String getBaselineImageHash(Long id) {
+        String hash = getTransformerEntity(id).getBaselineImageHash();
+        if (hash == null) {
+            throw new ResourceNotFoundException("Baseline image", "transformerId", id);
+        }
+        return hash;
+    }
+    
     private TransformerResponse mapToResponse(Transformer transformer) {
         return TransformerResponse.builder()
                 .id(transformer.getId())
@@ -108,11 +137,32 @@ public class TransformerService {
                 .pole(transformer.getPole())
                 .region(transformer.getRegion())
                 .type(transformer.getType())
-                .baselineImage(transformer.getBaselineImage())
+                .baselineImageHash(transformer.getBaselineImageHash())
+                .baselineImageUrl(baselineImageUrl(transformer.getId(), transformer.getBaselineImageHash()))
                 .baselineUploadDate(transformer.getBaselineUploadDate())
                 .weather(transformer.getWeather())
                 .location(transformer.getLocation())
                 .inspectionCount(transformer.getInspections() != null ? transformer.getInspections().size() : 0)
                 .build();
     }
+    
+    private TransformerResponse mapToResponse(TransformerSummary summary) {
+        return TransformerResponse.builder()
+                .id(summary.getId())
+                .number(summary.getNumber())
+                .pole(summary.getPole())
+                .region(summary.getRegion())
+                .type(summary.getType())
+                .baselineImageHash(summary.getBaselineImageHash())
+                .baselineImageUrl(baselineImageUrl(summary.getId(), summary.getBaselineImageHash()))
+                .baselineUploadDate(summary.getBaselineUploadDate())
+                .weather(summary.getWeather())
+                .location(summary.getLocation())
+                .inspectionCount(summary.getInspectionCount().intValue())
+                .build();
+    }
+    
+    private String baselineImageUrl(Long id, String hash) {
+        return hash != null ? "/transformers/" + id + "/images/baseline" : null;
+    }
 }
@@ -0,0 +1,132 @@
+package com.chamikara.spring_backend.storage;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Helpers for the legacy base64 / data URI image representation used by the JSON API
+ */
+public final class Base64Images {
+    
+    private Base64Images() {
+    }
+    
+    /**
+     * Open a decoding stream over a base64 image string (handles data URI prefix).
+     * The string is decoded lazily, so no second full-size copy is made on the heap.
+     * Malformed input surfaces as {@link IllegalArgumentException} while reading.
+     */
+    public static InputStream open(String base64Image) {
+        if (base64Image == null || base64Image.isEmpty()) {
+            throw new IllegalArgumentException("Image data cannot be empty");
+        }
+        
+        int start = base64Image.indexOf(',') + 1;
+        return new ValidatingInputStream(Base64.getDecoder().wrap(new AsciiInputStream(base64Image, start)));
+    }
+    
+    /**
+     * A resource reading the decoded image from the base64 string on every
+     * {@link Resource#getInputStream()}, so it can be streamed repeatedly without holding
+     * the decoded bytes
+     */
+    public static Resource asResource(String base64Image) {
+        if (base64Image == null || base64Image.isEmpty()) {
+            throw new IllegalArgumentException("Image data cannot be empty");
+        }
+        return new AbstractResource() {
+            
+            @Override
+            public InputStream getInputStream() {
+                return open(base64Image);
+            }
+            
+            @Override
+            public boolean exists() {
+                return true;
+            }
+            
+            @Override
+            public String getDescription() {
+                return "base64 image data";
+            }
+        };
+    }
+    
+    public static String toDataUri(byte[] data, String contentType) {
+        return "data:" + contentType + ";base64," + Base64.getEncoder().encodeToString(data);
+    }
+    
+    /**
+     * Reports decoder failures as invalid client input rather than I/O errors
+     */
+    private static final class ValidatingInputStream extends FilterInputStream {
+        
+        ValidatingInputStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid base64 image data", e);
+            }
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid base64 image data", e);
+            }
+        }
+    }
+    
+    /**
+     * Reads the characters of an ASCII string as bytes without copying it
+     */
+    private static final class AsciiInputStream extends InputStream {
+        
+        private final String source;
+        private int position;
+        
+        AsciiInputStream(String source, int start) {
+            this.source = source;
+            this.position = start;
+        }
+        
+        @Override
+        public int read() {
+            return position < source.length() ? source.charAt(position++) & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int remaining = source.length() - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = Math.min(length, remaining);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) source.charAt(position++);
+            }
+            return count;
+        }
+        
+        @Override
+        public int available() {
+            return source.length() - position;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.chamikara.spring_backend.storage;
+
+import lombok.Value;
+import org.springframework.core.io.Resource;
+
+/**
+ * A stored image opened for reading
+ */
+@Value
+public class ImageContent {
+    
+    StoredImage image;
+    Resource resource;
+}
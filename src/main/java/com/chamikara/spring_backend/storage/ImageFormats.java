@@ -0,0 +1,74 @@
+package com.chamikara.spring_backend.storage;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Detects image content types from file signatures
+ */
+public final class ImageFormats {
+    
+    /**
+     * Number of leading bytes needed to recognise every supported format
+     */
+    public static final int SIGNATURE_LENGTH = 12;
+    
+    private ImageFormats() {
+    }
+    
+    public static String detectContentType(byte[] header, int length) {
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G')) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        if (startsWith(header, length, 'B', 'M')) {
+            return "image/bmp";
+        }
+        if (startsWith(header, length, 'I', 'I', 0x2A, 0x00) || startsWith(header, length, 'M', 'M', 0x00, 0x2A)) {
+            return "image/tiff";
+        }
+        if (length >= 12 && startsWith(header, length, 'R', 'I', 'F', 'F')
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+    
+    /**
+     * Conventional file extension for a content type, for naming files sent to other services
+     */
+    public static String extension(String contentType) {
+        if (contentType == null) {
+            return "bin";
+        }
+        return switch (contentType) {
+            case MediaType.IMAGE_PNG_VALUE -> "png";
+            case MediaType.IMAGE_JPEG_VALUE -> "jpg";
+            case MediaType.IMAGE_GIF_VALUE -> "gif";
+            case "image/bmp" -> "bmp";
+            case "image/tiff" -> "tiff";
+            case "image/webp" -> "webp";
+            default -> "bin";
+        };
+    }
+    
+    public static boolean isImage(String contentType) {
+        return contentType != null && contentType.startsWith("image/");
+    }
+    
+    private static boolean startsWith(byte[] header, int length, int... signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
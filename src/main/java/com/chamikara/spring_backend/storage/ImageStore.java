@@ -0,0 +1,46 @@
+package com.chamikara.spring_backend.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Content-addressed storage for binary image data.
+ * Images are referenced by the lowercase hex SHA-256 of their bytes, so storing
+ * the same content twice yields the same reference and only one copy on disk.
+ */
+public interface ImageStore {
+    
+    /**
+     * Store the given stream and return its content reference. The stream is consumed but not closed.
+     */
+    StoredImage store(InputStream data);
+    
+    /**
+     * Look up metadata for a stored image
+     */
+    Optional<StoredImage> find(String hash);
+    
+    /**
+     * Open a stored image as a resource
+     *
+     * @throws com.chamikara.spring_backend.exception.ResourceNotFoundException if no image exists for the hash
+     */
+    Resource load(String hash);
+    
+    boolean exists(String hash);
+    
+    void delete(String hash);
+    
+    /**
+     * Record that {@code derivedHash} is the given variant (e.g. a thumbnail) of {@code sourceHash}.
+     * Derived images are stored like any other image, so identical derivatives share one file.
+     */
+    void putDerivative(String sourceHash, String variant, String derivedHash);
+    
+    /**
+     * Resolve a previously recorded variant of an image
+     */
+    Optional<String> findDerivative(String sourceHash, String variant);
+}
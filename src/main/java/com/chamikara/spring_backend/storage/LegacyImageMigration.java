@@ -0,0 +1,109 @@
+package com.chamikara.spring_backend.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Moves base64 images out of the legacy TEXT columns into the {@link ImageStore}.
+ * Rows are migrated one at a time and each update commits on its own, so the
+ * migration is resumable and never holds more than one image in memory.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LegacyImageMigration implements ApplicationRunner {
+    
+    private static final List<LegacyColumn> LEGACY_COLUMNS = List.of(
+            new LegacyColumn("transformers", "baseline_image", "baseline_image_hash"),
+            new LegacyColumn("inspections", "maintenance_image", "maintenance_image_hash"),
+            new LegacyColumn("inspections", "annotated_image", "annotated_image_hash"),
+            new LegacyColumn("maintenance_records", "annotated_image", "annotated_image_hash")
+    );
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ImageStore imageStore;
+    
+    @Value("${image.store.migration.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${image.store.migration.drop-legacy-columns:false}")
+    private boolean dropLegacyColumns;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        for (LegacyColumn column : LEGACY_COLUMNS) {
+            if (columnExists(column.table(), column.source())) {
+                migrate(column);
+            }
+        }
+    }
+    
+    private void migrate(LegacyColumn column) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM " + column.table() + " WHERE " + column.source() + " IS NOT NULL", Long.class);
+        if (!ids.isEmpty()) {
+            log.info("Migrating {} images from {}.{} to the image store", ids.size(), column.table(), column.source());
+        }
+        
+        int migrated = 0;
+        for (Long id : ids) {
+            String base64 = jdbcTemplate.queryForObject(
+                    "SELECT " + column.source() + " FROM " + column.table() + " WHERE id = ?", String.class, id);
+            String hash = null;
+            if (base64 != null && !base64.isEmpty()) {
+                try (InputStream in = Base64Images.open(base64)) {
+                    hash = imageStore.store(in).getHash();
+                } catch (IOException | IllegalArgumentException e) {
+                    log.error("Skipping undecodable image in {}.{} for id {}", column.table(), column.source(), id, e);
+                    continue;
+                }
+            }
+            jdbcTemplate.update("UPDATE " + column.table() + " SET " + column.target() + " = ?, "
+                    + column.source() + " = NULL WHERE id = ?", hash, id);
+            migrated++;
+        }
+        
+        if (migrated > 0) {
+            log.info("Migrated {} images from {}.{}", migrated, column.table(), column.source());
+        }
+        
+        if (dropLegacyColumns && migrated == ids.size()) {
+            jdbcTemplate.execute("ALTER TABLE " + column.table() + " DROP COLUMN " + column.source());
+            log.info("Dropped legacy column {}.{}", column.table(), column.source());
+        }
+    }
+    
+    private boolean columnExists(String table, String column) {
+        Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String name : List.of(column, column.toUpperCase())) {
+                String tableName = name.equals(column) ? table : table.toUpperCase();
+                try (ResultSet rs = metaData.getColumns(null, null, tableName, name)) {
+                    if (rs.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+    
+    private record LegacyColumn(String table, String source, String target) {
+    }
+}
@@ -0,0 +1,227 @@
+package com.chamikara.spring_backend.storage;
+
+import com.chamikara.spring_backend.exception.ResourceNotFoundException;
+import com.chamikara.spring_backend.exception.ServiceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * {@link ImageStore} keeping images as raw files on the local filesystem.
+ * Files are sharded into two directory levels by hash prefix: {@code ab/cd/abcd...}
+ * Derivative links live under {@code derivatives/<variant>/} with the same layout
+ * and contain the hash of the derived image.
+ */
+@Component
+@ConditionalOnProperty(name = "image.store.type", havingValue = "local", matchIfMissing = true)
+@Slf4j
+public class LocalImageStore implements ImageStore {
+    
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern VARIANT_PATTERN = Pattern.compile("[a-z0-9][a-z0-9-]{0,63}");
+    
+    private final Path root;
+    private final Path tempDir;
+    private final Path derivativesDir;
+    private final int bufferSize;
+    private final long maxImageSize;
+    
+    public LocalImageStore(
+            @Value("${image.store.local.root:data/images}") String root,
+            @Value("${image.store.buffer-size:64KB}") DataSize bufferSize,
+            @Value("${image.store.max-image-size:50MB}") DataSize maxImageSize) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.tempDir = this.root.resolve("tmp");
+        this.derivativesDir = this.root.resolve("derivatives");
+        this.bufferSize = (int) bufferSize.toBytes();
+        this.maxImageSize = maxImageSize.toBytes();
+        try {
+            Files.createDirectories(tempDir);
+        } catch (IOException e) {
+            throw new ServiceException("Failed to initialise image store at " + this.root, e);
+        }
+        log.info("Local image store initialised at {}", this.root);
+    }
+    
+    @Override
+    public StoredImage store(InputStream data) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(tempDir, "upload-", ".part");
+            
+            MessageDigest digest = newDigest();
+            long size = copy(data, temp, digest);
+            
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = resolve(hash);
+            if (Files.exists(target)) {
+                Files.delete(temp);
+            } else {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Stored concurrently by another request with the same content
+                    Files.deleteIfExists(temp);
+                }
+            }
+            
+            log.debug("Stored image {} ({} bytes)", hash, size);
+            return new StoredImage(hash, size, detectContentType(target));
+            
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new ServiceException("Failed to store image", e);
+        } catch (RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+    
+    @Override
+    public Optional<StoredImage> find(String hash) {
+        Path path = resolve(hash);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new StoredImage(hash, Files.size(path), detectContentType(path)));
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read image " + hash, e);
+        }
+    }
+    
+    @Override
+    public Resource load(String hash) {
+        Path path = resolve(hash);
+        if (!Files.isRegularFile(path)) {
+            throw new ResourceNotFoundException("Image", "hash", hash);
+        }
+        return new FileSystemResource(path);
+    }
+    
+    @Override
+    public boolean exists(String hash) {
+        return Files.isRegularFile(resolve(hash));
+    }
+    
+    @Override
+    public void delete(String hash) {
+        try {
+            Files.deleteIfExists(resolve(hash));
+        } catch (IOException e) {
+            throw new ServiceException("Failed to delete image " + hash, e);
+        }
+    }
+    
+    @Override
+    public void putDerivative(String sourceHash, String variant, String derivedHash) {
+        Path link = resolveDerivative(sourceHash, variant);
+        resolve(derivedHash);
+        Path temp = null;
+        try {
+            Files.createDirectories(link.getParent());
+            temp = Files.createTempFile(tempDir, "derivative-", ".part");
+            Files.writeString(temp, derivedHash);
+            Files.move(temp, link, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new ServiceException("Failed to record " + variant + " derivative of image " + sourceHash, e);
+        }
+    }
+    
+    @Override
+    public Optional<String> findDerivative(String sourceHash, String variant) {
+        Path link = resolveDerivative(sourceHash, variant);
+        if (!Files.isRegularFile(link)) {
+            return Optional.empty();
+        }
+        try {
+            String derivedHash = Files.readString(link).trim();
+            return exists(derivedHash) ? Optional.of(derivedHash) : Optional.empty();
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read " + variant + " derivative of image " + sourceHash, e);
+        }
+    }
+    
+    /**
+     * Copy through a single fixed-size buffer, hashing and counting as the bytes pass
+     */
+    private long copy(InputStream data, Path target, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                size += read;
+                if (size > maxImageSize) {
+                    throw new IllegalArgumentException("Image exceeds maximum size of " + maxImageSize + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+        return size;
+    }
+    
+    private Path resolve(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid image reference: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+    
+    private Path resolveDerivative(String sourceHash, String variant) {
+        if (variant == null || !VARIANT_PATTERN.matcher(variant).matches()) {
+            throw new IllegalArgumentException("Invalid image variant: " + variant);
+        }
+        Path source = resolve(sourceHash);
+        return derivativesDir.resolve(variant).resolve(root.relativize(source));
+    }
+    
+    private String detectContentType(Path path) throws IOException {
+        byte[] header = new byte[ImageFormats.SIGNATURE_LENGTH];
+        int length;
+        try (InputStream in = Files.newInputStream(path)) {
+            length = in.readNBytes(header, 0, header.length);
+        }
+        return ImageFormats.detectContentType(header, length);
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.chamikara.spring_backend.storage;
+
+import lombok.Value;
+
+/**
+ * Reference to an image held in an {@link ImageStore}
+ */
+@Value
+public class StoredImage {
+    
+    String hash;
+    long size;
+    String contentType;
+}
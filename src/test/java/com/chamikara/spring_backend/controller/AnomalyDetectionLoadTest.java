@@ -0,0 +1,184 @@
+package com.chamikara.spring_backend.controller;
+
+import com.chamikara.spring_backend.entity.Inspection;
+import com.chamikara.spring_backend.entity.Transformer;
+import com.chamikara.spring_backend.repository.InspectionRepository;
+import com.chamikara.spring_backend.repository.TransformerRepository;
+import com.chamikara.spring_backend.service.ImageService;
+import com.chamikara.spring_backend.support.StubInferenceServer;
+import org.junit.jupiter.api.AfterAll;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs several times more concurrent detections than there are Tomcat worker threads
+ * against a slow inference stub, and checks that CRUD requests are still served
+ * promptly while the detections are in flight.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.tomcat.threads.max=16", "fastapi.service.timeout=30000", "detection.cache.enabled=false",
+                // Every detection must reach the stub at once; the adaptive limit would shed most of them
+                "detection.resilience.limit.initial=128", "detection.resilience.limit.max=128"})
+@ActiveProfiles("test")
+class AnomalyDetectionLoadTest {
+    
+    private static final Logger log = LoggerFactory.getLogger(AnomalyDetectionLoadTest.class);
+    
+    private static final int WORKER_THREADS = 16;
+    private static final int CONCURRENT_DETECTIONS = WORKER_THREADS * 4;
+    private static final Duration INFERENCE_LATENCY = Duration.ofSeconds(2);
+    private static final int CRUD_SAMPLES = 20;
+    
+    private static final StubInferenceServer inference = StubInferenceServer.start(INFERENCE_LATENCY);
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private TransformerRepository transformerRepository;
+    
+    @Autowired
+    private InspectionRepository inspectionRepository;
+    
+    @Autowired
+    private ImageService imageService;
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    
+    @DynamicPropertySource
+    static void inferenceProperties(DynamicPropertyRegistry registry) {
+        registry.add("fastapi.service.url", inference::baseUrl);
+    }
+    
+    @AfterAll
+    static void stopInference() {
+        inference.close();
+    }
+    
+    @Test
+    void crudLatencyStaysFlatWhileDetectionsAreInFlight() throws Exception {
+        Long inspectionId = createInspectionWithImages();
+        
+        // Warm up both paths so JIT compilation does not land in the measurements
+        assertThat(detect(inspectionId, -1).get().statusCode()).isEqualTo(200);
+        sampleCrudLatencies();
+        List<Long> idle = sampleCrudLatencies();
+        
+        long started = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> detections = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_DETECTIONS; i++) {
+            detections.add(detect(inspectionId, i));
+        }
+        long deadline = started + INFERENCE_LATENCY.toNanos() / 2;
+        while (inference.detectRequests() < WORKER_THREADS + 1 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        
+        List<Long> loaded = sampleCrudLatencies();
+        long stillRunning = detections.stream().filter(detection -> !detection.isDone()).count();
+        
+        CompletableFuture.allOf(detections.toArray(CompletableFuture[]::new)).get();
+        long totalMillis = (System.nanoTime() - started) / 1_000_000;
+        
+        log.info("CRUD latency idle: p50={}ms max={}ms", percentile(idle, 50), percentile(idle, 100));
+        log.info("CRUD latency loaded: p50={}ms max={}ms ({} of {} detections still in flight after sampling)",
+                percentile(loaded, 50), percentile(loaded, 100), stillRunning, CONCURRENT_DETECTIONS);
+        log.info("{} detections of {}ms each completed in {}ms on {} worker threads",
+                CONCURRENT_DETECTIONS, INFERENCE_LATENCY.toMillis(), totalMillis, WORKER_THREADS);
+        
+        for (CompletableFuture<HttpResponse<String>> detection : detections) {
+            assertThat(detection.get().statusCode()).isEqualTo(200);
+        }
+        // More detections were open than there are worker threads, so none of them holds one
+        assertThat(stillRunning).isGreaterThan(WORKER_THREADS);
+        // A blocking implementation makes most CRUD requests queue for a whole inference
+        // latency; the bound is loose so a slow machine does not fail the test
+        assertThat(percentile(loaded, 50)).isLessThan(INFERENCE_LATENCY.toMillis() / 2);
+    }
+    
+    /**
+     * Each slider value is a distinct request, so the detections are not coalesced
+     */
+    private CompletableFuture<HttpResponse<String>> detect(Long inspectionId, int sliderPercent) {
+        return client.sendAsync(
+                request("/anomaly-detection/inspections/" + inspectionId + "/detect")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"sliderPercent\":" + sliderPercent + "}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+    
+    private List<Long> sampleCrudLatencies() throws IOException, InterruptedException {
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < CRUD_SAMPLES; i++) {
+            long start = System.nanoTime();
+            HttpResponse<String> response = client.send(request("/transformers").GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+            assertThat(response.statusCode()).isEqualTo(200);
+        }
+        return latencies;
+    }
+    
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30));
+    }
+    
+    private Long createInspectionWithImages() throws IOException {
+        Transformer transformer = transformerRepository.save(Transformer.builder()
+                .number("LOAD-1")
+                .baselineImageHash(storeImage(0x3366cc))
+                .build());
+        Inspection inspection = inspectionRepository.save(Inspection.builder()
+                .transformer(transformer)
+                .maintenanceImageHash(storeImage(0xcc6633))
+                .build());
+        return inspection.getId();
+    }
+    
+    private String storeImage(int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, rgb ^ (x * y));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return imageService.store(new ByteArrayInputStream(out.toByteArray())).getHash();
+    }
+    
+    private static long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = values.stream().sorted().toList();
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+}
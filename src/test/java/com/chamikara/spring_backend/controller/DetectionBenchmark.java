@@ -0,0 +1,235 @@
+package com.chamikara.spring_backend.controller;
+
+import com.chamikara.spring_backend.entity.Inspection;
+import com.chamikara.spring_backend.entity.Transformer;
+import com.chamikara.spring_backend.repository.InspectionRepository;
+import com.chamikara.spring_backend.repository.TransformerRepository;
+import com.chamikara.spring_backend.service.ImageService;
+import com.chamikara.spring_backend.support.StubInferenceServer;
+import com.chamikara.spring_backend.support.StubInferenceServer.LatencyDistribution;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark of the detect path: drives {@code POST /anomaly-detection/inspections/{id}/detect}
+ * at a fixed concurrency against {@link StubInferenceServer}, then reports throughput,
+ * latency percentiles, status codes and heap usage. Its name keeps it out of {@code mvn test};
+ * run it with {@code mvn test -Dtest=DetectionBenchmark}, see the README for the settings.
+ * <p>
+ * Only the controller is measured, but the stub and the load generator share its JVM, so
+ * heap figures include theirs.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "detection.cache.enabled=false")
+@ActiveProfiles("test")
+class DetectionBenchmark {
+    
+    private static final Logger log = LoggerFactory.getLogger(DetectionBenchmark.class);
+    
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 32);
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 2000);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("benchmark.warmup", 200);
+    private static final int IMAGE_SIZE = Integer.getInteger("benchmark.image-size", 640);
+    
+    private static final StubInferenceServer inference = StubInferenceServer.start(latency());
+    
+    static {
+        inference.setErrorRate(Double.parseDouble(System.getProperty("benchmark.error-rate", "0")));
+        inference.setAnomalyCount(Integer.getInteger("benchmark.anomalies", 1));
+    }
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private TransformerRepository transformerRepository;
+    
+    @Autowired
+    private InspectionRepository inspectionRepository;
+    
+    @Autowired
+    private ImageService imageService;
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    
+    // Each detection uses a fresh slider value so none is coalesced with another
+    private final AtomicInteger sliderPercent = new AtomicInteger();
+    
+    @DynamicPropertySource
+    static void benchmarkProperties(DynamicPropertyRegistry registry) {
+        registry.add("fastapi.service.url", inference::baseUrl);
+        registry.add("fastapi.service.timeout", () -> System.getProperty("fastapi.service.timeout", "60000"));
+        // Pins the adaptive limit, so the service is measured rather than the overload
+        // protection in front of it; override these to benchmark the limit itself
+        for (String limit : List.of("initial", "min", "max")) {
+            String property = "detection.resilience.limit." + limit;
+            registry.add(property, () -> System.getProperty(property, "1024"));
+        }
+    }
+    
+    @AfterAll
+    static void stopInference() {
+        inference.close();
+    }
+    
+    @Test
+    void detect() throws Exception {
+        Long inspectionId = createInspectionWithImages();
+        
+        // Lets JIT compilation and connection pools settle before measuring
+        run(inspectionId, WARMUP_REQUESTS);
+        System.gc();
+        
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long gcCountBefore = gcCount();
+        AtomicLong peakHeap = new AtomicLong(heapBefore);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+        
+        long started = System.nanoTime();
+        Result result;
+        try {
+            result = run(inspectionId, REQUESTS);
+        } finally {
+            sampler.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        
+        log.info("Detection benchmark: {} requests at concurrency {}, {}x{} images, {} stub latency",
+                REQUESTS, CONCURRENCY, IMAGE_SIZE, IMAGE_SIZE, describeLatency());
+        log.info("  throughput  {} req/s", String.format("%.1f", REQUESTS / seconds));
+        log.info("  latency     p50={}ms p90={}ms p99={}ms max={}ms",
+                percentile(result.latencies(), 50), percentile(result.latencies(), 90),
+                percentile(result.latencies(), 99), percentile(result.latencies(), 100));
+        log.info("  status      {}", result.statuses());
+        log.info("  heap        before={}MB peak={}MB, {} GCs",
+                heapBefore >> 20, peakHeap.get() >> 20, gcCount() - gcCountBefore);
+        
+        assertThat(result.latencies()).hasSize(REQUESTS);
+    }
+    
+    private Result run(Long inspectionId, int requests) throws InterruptedException {
+        List<Long> latencies = new ArrayList<>(requests);
+        Map<Integer, Integer> statuses = new TreeMap<>();
+        Semaphore slots = new Semaphore(CONCURRENCY);
+        for (int i = 0; i < requests; i++) {
+            slots.acquire();
+            long start = System.nanoTime();
+            client.sendAsync(detectRequest(inspectionId), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long millis = (System.nanoTime() - start) / 1_000_000;
+                        synchronized (latencies) {
+                            latencies.add(millis);
+                            // -1 stands for a request that got no response at all
+                            statuses.merge(error == null ? response.statusCode() : -1, 1, Integer::sum);
+                        }
+                        slots.release();
+                    });
+        }
+        slots.acquire(CONCURRENCY);
+        return new Result(latencies, statuses);
+    }
+    
+    private HttpRequest detectRequest(Long inspectionId) {
+        return HttpRequest.newBuilder(URI.create(
+                        "http://localhost:" + port + "/anomaly-detection/inspections/" + inspectionId + "/detect"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"sliderPercent\":" + sliderPercent.getAndIncrement() + "}"))
+                .build();
+    }
+    
+    private static LatencyDistribution latency() {
+        Duration median = DurationStyle.detectAndParse(System.getProperty("benchmark.latency", "50ms"));
+        String p99 = System.getProperty("benchmark.latency-p99");
+        return p99 == null
+                ? LatencyDistribution.fixed(median)
+                : LatencyDistribution.logNormal(median, DurationStyle.detectAndParse(p99));
+    }
+    
+    private static String describeLatency() {
+        String median = System.getProperty("benchmark.latency", "50ms");
+        String p99 = System.getProperty("benchmark.latency-p99");
+        return p99 == null ? median : median + " median/" + p99 + " p99";
+    }
+    
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(gc -> Math.max(gc.getCollectionCount(), 0))
+                .sum();
+    }
+    
+    private Long createInspectionWithImages() throws IOException {
+        Transformer transformer = transformerRepository.save(Transformer.builder()
+                .number("BENCH-1")
+                .baselineImageHash(storeImage(0x3366cc))
+                .build());
+        Inspection inspection = inspectionRepository.save(Inspection.builder()
+                .transformer(transformer)
+                .maintenanceImageHash(storeImage(0xcc6633))
+                .build());
+        return inspection.getId();
+    }
+    
+    private String storeImage(int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, rgb ^ (x * y));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return imageService.store(new ByteArrayInputStream(out.toByteArray())).getHash();
+    }
+    
+    private static long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = values.stream().sorted().toList();
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+    
+    private record Result(List<Long> latencies, Map<Integer, Integer> statuses) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.chamikara.spring_backend.detection;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AIMD behaviour of a limit starting at 4, between 1 and 6, that backs off by 0.8 when a
+ * call takes over twice the baseline latency
+ */
+class AdaptiveConcurrencyLimitTest {
+    
+    private static final long BASELINE = Duration.ofMillis(100).toNanos();
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(meterRegistry, 4, 1, 6, 2.0, 0.8);
+    
+    @Test
+    void rejectsCallsBeyondTheLimitUntilOneFinishes() {
+        List<AdaptiveConcurrencyLimit.Permit> permits = acquireAll();
+        
+        assertThat(permits).hasSize(4);
+        assertThat(limit.getInFlight()).isEqualTo(4);
+        assertThat(meterRegistry.get("detection.limit.rejected").counter().count()).isEqualTo(1);
+        
+        permits.get(0).release();
+        // Only the first outcome of a permit counts
+        permits.get(0).onDropped();
+        
+        assertThat(limit.getInFlight()).isEqualTo(3);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        assertThat(limit.tryAcquire()).isNotNull();
+    }
+    
+    @Test
+    void growsByAboutOnePerLimitOfCallsWhileSaturated() {
+        // 4.25, 4.49, 4.71 from the three calls that started with the limit half used
+        acquireAll().forEach(permit -> permit.onSuccess(BASELINE));
+        assertThat(limit.getLimit()).isEqualTo(4);
+        
+        // 4.92, 5.12
+        acquireAll().forEach(permit -> permit.onSuccess(BASELINE));
+        assertThat(limit.getLimit()).isEqualTo(5);
+        
+        for (int i = 0; i < 20; i++) {
+            acquireAll().forEach(permit -> permit.onSuccess(BASELINE));
+        }
+        assertThat(limit.getLimit()).isEqualTo(6);
+    }
+    
+    @Test
+    void doesNotGrowOnAnIdleService() {
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire().onSuccess(BASELINE);
+        }
+        
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+    
+    @Test
+    void backsOffWhenLatencyRisesAboveTheTolerance() {
+        limit.tryAcquire().onSuccess(BASELINE);
+        
+        // Under twice the baseline: no change
+        limit.tryAcquire().onSuccess(BASELINE * 3 / 2);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        
+        // 4 * 0.8
+        limit.tryAcquire().onSuccess(BASELINE * 3);
+        assertThat(limit.getLimit()).isEqualTo(3);
+    }
+    
+    @Test
+    void backsOffOnDroppedCallsDownToTheMinimum() {
+        limit.tryAcquire().onDropped();
+        assertThat(limit.getLimit()).isEqualTo(3);
+        
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire().onDropped();
+        }
+        
+        assertThat(limit.getLimit()).isEqualTo(1);
+        assertThat(limit.getInFlight()).isZero();
+    }
+    
+    private List<AdaptiveConcurrencyLimit.Permit> acquireAll() {
+        List<AdaptiveConcurrencyLimit.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimit.Permit permit;
+        while ((permit = limit.tryAcquire()) != null) {
+            permits.add(permit);
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,195 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse.DetectedAnomaly;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse.DetectionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Slider changes answered from FastAPI-like responses with base thresholds of 0.4
+ * (potential fault) and 0.6 (fault)
+ */
+class DetectionRethresholderTest {
+    
+    private static final double BASE_POTENTIAL = 0.4;
+    private static final double BASE_FAULT = 0.6;
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    @Test
+    void raisingTheThresholdFiltersAndReclassifiesCandidates() {
+        DetectionRethresholder rethresholder = rethresholder(10);
+        learnAllLabels(rethresholder);
+        rethresholder.offer(key("a", 0.0), response(0.0, 0.45, 0.55, 0.7));
+        
+        // Thresholds 0.5 and 0.75: 0.45 is dropped and 0.7 is no longer a fault
+        AnomalyDetectionResponse raised = rethresholder.rethreshold(key("a", 25.0)).orElseThrow();
+        
+        assertThat(raised.getAnomalies()).extracting(DetectedAnomaly::getConfidence).containsExactly(0.55, 0.7);
+        assertThat(raised.getAnomalies()).extracting(DetectedAnomaly::getSeverity)
+                .containsOnly("Potentially Faulty");
+        assertThat(raised.getImageLevelLabel()).isEqualTo("Potentially Faulty");
+        assertThat(raised.getAnomalyCount()).isEqualTo(2);
+        assertThat(raised.getMetrics().getThresholdPotential()).isCloseTo(0.5, within(1e-9));
+        assertThat(raised.getMetrics().getThresholdFault()).isCloseTo(0.75, within(1e-9));
+        assertThat(raised.getMetrics().getSliderPercent()).isEqualTo(25.0);
+        assertThat(raised.getOverlayImage()).isNull();
+        
+        // Thresholds 0.8 and 1.2 leave nothing
+        AnomalyDetectionResponse cleared = rethresholder.rethreshold(key("a", 100.0)).orElseThrow();
+        assertThat(cleared.getAnomalies()).isEmpty();
+        assertThat(cleared.getImageLevelLabel()).isEqualTo("Normal");
+    }
+    
+    @Test
+    void loweringBelowTheRetainedThresholdNeedsFastApi() {
+        DetectionRethresholder rethresholder = rethresholder(10);
+        learnAllLabels(rethresholder);
+        rethresholder.offer(key("a", 0.0), response(0.0, 0.45, 0.7));
+        
+        assertThat(rethresholder.rethreshold(key("a", 0.0))).isPresent();
+        assertThat(rethresholder.rethreshold(key("a", -10.0))).isEmpty();
+        
+        // The wider response replaces the retained one, and is not replaced by a narrower one
+        rethresholder.offer(key("a", -10.0), response(-10.0, 0.37, 0.45, 0.7));
+        rethresholder.offer(key("a", 50.0), response(50.0, 0.7));
+        AnomalyDetectionResponse lowered = rethresholder.rethreshold(key("a", -10.0)).orElseThrow();
+        assertThat(lowered.getAnomalies()).extracting(DetectedAnomaly::getConfidence).containsExactly(0.37, 0.45, 0.7);
+        
+        assertThat(meterRegistry.get("detection.rethreshold.requests").tag("result", "local").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("detection.rethreshold.requests").tag("result", "remote").counter().count())
+                .isEqualTo(1);
+    }
+    
+    @Test
+    void rejectsResponsesWhoseMetricsDoNotFollowTheScheme() {
+        DetectionRethresholder rethresholder = rethresholder(10);
+        learnAllLabels(rethresholder);
+        
+        // Threshold not scaled by the slider
+        AnomalyDetectionResponse unscaled = response(20.0, 0.7);
+        unscaled.getMetrics().setThresholdPotential(BASE_POTENTIAL);
+        rethresholder.offer(key("a", 20.0), unscaled);
+        
+        // Candidate below the reported threshold
+        rethresholder.offer(key("b", 0.0), response(0.0, 0.3));
+        
+        // No metrics at all
+        rethresholder.offer(key("c", 0.0), response(0.0, 0.7).toBuilder().metrics(null).build());
+        
+        assertThat(rethresholder.rethreshold(key("a", 50.0))).isEmpty();
+        assertThat(rethresholder.rethreshold(key("b", 50.0))).isEmpty();
+        assertThat(rethresholder.rethreshold(key("c", 50.0))).isEmpty();
+    }
+    
+    @Test
+    void conflictingLabelsAreNeverAnsweredLocally() {
+        DetectionRethresholder rethresholder = rethresholder(10);
+        learnAllLabels(rethresholder);
+        rethresholder.offer(key("a", 0.0), response(0.0, 0.45, 0.7));
+        
+        // Another pair whose fault is labelled differently at the same level
+        AnomalyDetectionResponse critical = response(0.0, 0.8);
+        critical.setImageLevelLabel("Critical");
+        rethresholder.offer(key("b", 0.0), critical);
+        
+        // Results with a fault need the ambiguous image label
+        assertThat(rethresholder.rethreshold(key("a", 0.0))).isEmpty();
+        assertThat(rethresholder.rethreshold(key("b", 10.0))).isEmpty();
+        // Results without one do not
+        assertThat(rethresholder.rethreshold(key("a", 50.0))).isPresent();
+        
+        // A later agreeing response does not make the label usable again
+        rethresholder.offer(key("c", 0.0), response(0.0, 0.9));
+        assertThat(rethresholder.rethreshold(key("c", 0.0))).isEmpty();
+    }
+    
+    @Test
+    void evictsTheLeastRecentlyUsedPairBeyondMaxCandidates() {
+        DetectionRethresholder rethresholder = rethresholder(3);
+        rethresholder.offer(key("none", 0.0), response(0.0));
+        rethresholder.offer(key("potential", 0.0), response(0.0, 0.45));
+        rethresholder.offer(key("fault", 0.0), response(0.0, 0.45, 0.7));
+        
+        // Used, so "potential" is now the eldest
+        assertThat(rethresholder.rethreshold(key("none", 10.0))).isPresent();
+        rethresholder.offer(key("d", 0.0), response(0.0, 0.5));
+        
+        assertThat(rethresholder.rethreshold(key("potential", 10.0))).isEmpty();
+        assertThat(rethresholder.rethreshold(key("none", 10.0))).isPresent();
+        assertThat(rethresholder.rethreshold(key("fault", 10.0))).isPresent();
+        assertThat(rethresholder.rethreshold(key("d", 10.0))).isPresent();
+    }
+    
+    @Test
+    void answersNothingWhenDisabled() {
+        DetectionRethresholder rethresholder = new DetectionRethresholder(meterRegistry, false, 10);
+        rethresholder.offer(key("a", 0.0), response(0.0, 0.45, 0.7));
+        
+        assertThat(rethresholder.rethreshold(key("a", 10.0))).isEmpty();
+    }
+    
+    private DetectionRethresholder rethresholder(int maxCandidates) {
+        return new DetectionRethresholder(meterRegistry, true, maxCandidates);
+    }
+    
+    /**
+     * Teach the severity and image labels of every level through responses for other pairs
+     */
+    private static void learnAllLabels(DetectionRethresholder rethresholder) {
+        rethresholder.offer(key("labels-none", 0.0), response(0.0));
+        rethresholder.offer(key("labels-potential", 0.0), response(0.0, 0.45));
+        rethresholder.offer(key("labels-fault", 0.0), response(0.0, 0.45, 0.7));
+    }
+    
+    private static DetectionCacheKey key(String maintenanceHash, Double sliderPercent) {
+        return new DetectionCacheKey("baseline", maintenanceHash, sliderPercent, "v1");
+    }
+    
+    /**
+     * A response as FastAPI produces it for the slider value, holding anomalies of the given
+     * confidences
+     */
+    private static AnomalyDetectionResponse response(double sliderPercent, double... confidences) {
+        double scale = 1 + sliderPercent / 100;
+        double potential = BASE_POTENTIAL * scale;
+        double fault = BASE_FAULT * scale;
+        List<DetectedAnomaly> anomalies = new ArrayList<>();
+        String imageLevelLabel = "Normal";
+        for (double confidence : confidences) {
+            boolean isFault = confidence >= fault;
+            anomalies.add(DetectedAnomaly.builder()
+                    .id("anomaly-" + anomalies.size())
+                    .confidence(confidence)
+                    .severity(isFault ? "Faulty" : "Potentially Faulty")
+                    .classification("Loose Joint")
+                    .build());
+            if (isFault) {
+                imageLevelLabel = "Faulty";
+            } else if (!imageLevelLabel.equals("Faulty")) {
+                imageLevelLabel = "Potentially Faulty";
+            }
+        }
+        return AnomalyDetectionResponse.builder()
+                .imageLevelLabel(imageLevelLabel)
+                .anomalyCount(anomalies.size())
+                .anomalies(anomalies)
+                .metrics(DetectionMetrics.builder()
+                        .thresholdPotential(potential)
+                        .thresholdFault(fault)
+                        .basePotential(BASE_POTENTIAL)
+                        .baseFault(BASE_FAULT)
+                        .sliderPercent(sliderPercent)
+                        .scaleApplied(scale)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,143 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Admission order of the detection scheduler, with calls held open until released
+ */
+class DetectionSchedulerTest {
+    
+    private final List<String> started = new CopyOnWriteArrayList<>();
+    private final List<Sinks.Empty<Void>> running = new CopyOnWriteArrayList<>();
+    
+    @Test
+    void admitsInteractiveWorkBeforeQueuedBulkWork() {
+        DetectionScheduler scheduler = scheduler(1, 100, List.of());
+        submit(scheduler, DetectionPriority.BULK, null, "bulk-running");
+        submit(scheduler, DetectionPriority.BULK, null, "bulk-queued");
+        submit(scheduler, DetectionPriority.STANDARD, null, "standard");
+        submit(scheduler, DetectionPriority.INTERACTIVE, null, "interactive");
+        
+        completeAll();
+        
+        assertThat(started).containsExactly("bulk-running", "interactive", "standard", "bulk-queued");
+    }
+    
+    @Test
+    void sharesSlotsFairlyAcrossRegionsByWeight() {
+        DetectionScheduler scheduler = scheduler(1, 100, List.of("South:2"));
+        submit(scheduler, DetectionPriority.BULK, "North", "blocker");
+        for (int i = 0; i < 6; i++) {
+            submit(scheduler, DetectionPriority.BULK, "North", "north");
+        }
+        for (int i = 0; i < 4; i++) {
+            submit(scheduler, DetectionPriority.BULK, "South", "south");
+        }
+        
+        completeAll();
+        
+        // South has twice North's weight, so it gets two slots for each of North's until it
+        // has nothing left, although North queued first
+        assertThat(started).containsExactly("blocker",
+                "south", "north", "south", "south", "north", "south", "north", "north", "north", "north");
+    }
+    
+    @Test
+    void keepsPartOfTheLimitFreeOfBulkWork() {
+        DetectionScheduler scheduler = scheduler(4, 100, List.of());
+        for (int i = 0; i < 4; i++) {
+            submit(scheduler, DetectionPriority.BULK, null, "bulk");
+        }
+        
+        // Bulk work may use half of the limit, interactive work all of it
+        assertThat(scheduler.getRunning()).isEqualTo(2);
+        submit(scheduler, DetectionPriority.INTERACTIVE, null, "interactive");
+        submit(scheduler, DetectionPriority.INTERACTIVE, null, "interactive");
+        assertThat(scheduler.getRunning()).isEqualTo(4);
+        assertThat(scheduler.getQueued(DetectionPriority.BULK)).isEqualTo(2);
+        
+        completeAll();
+    }
+    
+    @Test
+    void preemptsQueuedBulkWorkWhenTheQueueIsFull() {
+        DetectionScheduler scheduler = scheduler(1, 2, List.of());
+        submit(scheduler, DetectionPriority.INTERACTIVE, null, "running");
+        AtomicReference<Throwable> first = submit(scheduler, DetectionPriority.BULK, null, "bulk-1");
+        AtomicReference<Throwable> second = submit(scheduler, DetectionPriority.BULK, null, "bulk-2");
+        AtomicReference<Throwable> interactive = submit(scheduler, DetectionPriority.INTERACTIVE, null, "interactive");
+        AtomicReference<Throwable> rejected = submit(scheduler, DetectionPriority.BULK, null, "bulk-3");
+        
+        completeAll();
+        
+        // The most recently queued bulk detection makes way; a bulk one cannot evict its own class
+        assertThat(second.get()).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(rejected.get()).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(first.get()).isNull();
+        assertThat(interactive.get()).isNull();
+        assertThat(started).containsExactly("running", "interactive", "bulk-1");
+    }
+    
+    @Test
+    void rejectsDetectionsWaitingLongerThanTheirClassAllows() {
+        DetectionScheduler scheduler = new DetectionScheduler(new SimpleMeterRegistry(), limit(1), 100, List.of(),
+                Duration.ofMillis(100), Duration.ofMinutes(1), 0.75, Duration.ofMinutes(1), 0.5);
+        submit(scheduler, DetectionPriority.BULK, null, "running");
+        
+        Throwable error = scheduler.schedule(DetectionPriority.INTERACTIVE, null, () -> Mono.just("late"))
+                .<Throwable>map(result -> null)
+                .onErrorResume(Mono::just)
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(error).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(scheduler.getQueued(DetectionPriority.INTERACTIVE)).isZero();
+        completeAll();
+    }
+    
+    private DetectionScheduler scheduler(int limit, int queueCapacity, List<String> flowWeights) {
+        return new DetectionScheduler(new SimpleMeterRegistry(), limit(limit), queueCapacity, flowWeights,
+                Duration.ofMinutes(1), Duration.ofMinutes(1), 0.75, Duration.ofMinutes(1), 0.5);
+    }
+    
+    private static AdaptiveConcurrencyLimit limit(int limit) {
+        return new AdaptiveConcurrencyLimit(new SimpleMeterRegistry(), limit, limit, limit, 2.0, 0.8);
+    }
+    
+    /**
+     * Schedule a call that stays open until completed by {@link #completeAll()}
+     *
+     * @return holds the detection's error once it failed
+     */
+    private AtomicReference<Throwable> submit(DetectionScheduler scheduler, DetectionPriority priority,
+                                              String region, String name) {
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        scheduler.schedule(priority, region, () -> {
+                    started.add(name);
+                    Sinks.Empty<Void> call = Sinks.empty();
+                    running.add(call);
+                    return call.asMono();
+                })
+                .subscribe(null, error::set);
+        return error;
+    }
+    
+    /**
+     * Complete running calls one at a time, letting each admit the next, until none are left
+     */
+    private void completeAll() {
+        while (!running.isEmpty()) {
+            running.remove(0).tryEmitEmpty();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.chamikara.spring_backend.detection;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hedging delay at the 50th percentile of a window of 4 calls, after at least 2 of them
+ */
+class HedgingPolicyTest {
+    
+    private static final long MILLIS = Duration.ofMillis(1).toNanos();
+    
+    private final HedgingPolicy hedging = new HedgingPolicy(new SimpleMeterRegistry(), true, 50,
+            Duration.ofMillis(10), 4, 2, 0.5);
+    
+    @Test
+    void hedgesAtThePercentileOfRecentLatencies() {
+        hedging.record(100 * MILLIS);
+        assertThat(hedging.delay()).isNull();
+        
+        hedging.record(200 * MILLIS);
+        assertThat(hedging.delay()).isEqualTo(Duration.ofMillis(100));
+        
+        // The oldest samples leave the window
+        for (int i = 0; i < 4; i++) {
+            hedging.record(300 * MILLIS);
+        }
+        assertThat(hedging.delay()).isEqualTo(Duration.ofMillis(300));
+    }
+    
+    @Test
+    void recordsCancelledAttemptsSlowerThanTheDelay() {
+        hedging.record(100 * MILLIS);
+        hedging.record(100 * MILLIS);
+        
+        // Losers of hedges that ran past the delay keep the tail visible
+        hedging.recordCancelled(400 * MILLIS);
+        hedging.recordCancelled(500 * MILLIS);
+        hedging.recordCancelled(600 * MILLIS);
+        
+        assertThat(hedging.delay()).isEqualTo(Duration.ofMillis(400));
+    }
+    
+    @Test
+    void ignoresAttemptsCancelledBeforeTheDelay() {
+        hedging.recordCancelled(400 * MILLIS);
+        assertThat(hedging.delay()).isNull();
+        
+        hedging.record(100 * MILLIS);
+        hedging.record(100 * MILLIS);
+        hedging.recordCancelled(50 * MILLIS);
+        hedging.recordCancelled(50 * MILLIS);
+        
+        assertThat(hedging.delay()).isEqualTo(Duration.ofMillis(100));
+    }
+    
+    @Test
+    void hedgesNoMoreThanTheBudgetAllows() {
+        hedging.onCall();
+        assertThat(hedging.tryHedge()).isFalse();
+        
+        hedging.onCall();
+        assertThat(hedging.tryHedge()).isTrue();
+        assertThat(hedging.tryHedge()).isFalse();
+    }
+}
@@ -0,0 +1,129 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.detection.InferenceCircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Breaker transitions on a window of 4 calls, at least 2 of them, opening at 50% failed or
+ * slow calls for 10 seconds of a hand-driven clock, with 2 trial calls when half-open
+ */
+class InferenceCircuitBreakerTest {
+    
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+    private static final long FAST = Duration.ofMillis(100).toNanos();
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final InferenceCircuitBreaker breaker = new InferenceCircuitBreaker(meterRegistry, 4, 2, 50,
+            Duration.ofSeconds(1), Duration.ofSeconds(10), 2, clock::get);
+    
+    @Test
+    void opensOnceHalfOfTheWindowFailsOrIsSlow() {
+        breaker.tryAcquire().onSuccess(FAST);
+        breaker.tryAcquire().onSuccess(FAST);
+        breaker.tryAcquire().onFailure();
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        
+        // Slow responses count as failures
+        breaker.tryAcquire().onSuccess(SLOW);
+        
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(meterRegistry.get("detection.breaker.rejected").counter().count()).isEqualTo(1);
+    }
+    
+    @Test
+    void waitsTheOpenDurationThenClosesAfterSuccessfulTrials() {
+        open();
+        assertThat(breaker.getRetryAfter()).isEqualTo(Duration.ofSeconds(10));
+        
+        advance(Duration.ofSeconds(9));
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(breaker.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+        
+        advance(Duration.ofSeconds(1));
+        InferenceCircuitBreaker.Permit first = breaker.tryAcquire();
+        InferenceCircuitBreaker.Permit second = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.getRetryAfter()).isZero();
+        // Only two trials at a time
+        assertThat(breaker.tryAcquire()).isNull();
+        
+        first.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        second.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        
+        // The window starts empty again, so one failure is below the minimum
+        breaker.tryAcquire().onFailure();
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+    
+    @Test
+    void failedOrSlowTrialOpensAgainForAFullDuration() {
+        open();
+        advance(Duration.ofSeconds(10));
+        InferenceCircuitBreaker.Permit trial = breaker.tryAcquire();
+        breaker.tryAcquire().onSuccess(FAST);
+        
+        trial.onSuccess(SLOW);
+        
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.getRetryAfter()).isEqualTo(Duration.ofSeconds(10));
+    }
+    
+    @Test
+    void ignoresOutcomesOfCallsStartedBeforeTheBreakerOpened() {
+        InferenceCircuitBreaker.Permit stale = breaker.tryAcquire();
+        InferenceCircuitBreaker.Permit staleFailure = breaker.tryAcquire();
+        open();
+        
+        // Neither reopens nor counts towards the trials
+        advance(Duration.ofSeconds(10));
+        InferenceCircuitBreaker.Permit first = breaker.tryAcquire();
+        staleFailure.onFailure();
+        stale.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        
+        first.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.tryAcquire().onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+    
+    @Test
+    void releasedTrialLetsAnotherCallThrough() {
+        open();
+        advance(Duration.ofSeconds(10));
+        InferenceCircuitBreaker.Permit released = breaker.tryAcquire();
+        InferenceCircuitBreaker.Permit kept = breaker.tryAcquire();
+        assertThat(breaker.tryAcquire()).isNull();
+        
+        released.release();
+        // Only the first outcome of a permit counts
+        released.onFailure();
+        InferenceCircuitBreaker.Permit replacement = breaker.tryAcquire();
+        
+        assertThat(replacement).isNotNull();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        kept.onSuccess(FAST);
+        replacement.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+    
+    private void open() {
+        breaker.tryAcquire().onFailure();
+        breaker.tryAcquire().onFailure();
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+    
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,176 @@
+package com.chamikara.spring_backend.detection;
+
+import com.chamikara.spring_backend.support.StubInferenceServer;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Balances detect calls across several stub inference servers on different ports.
+ */
+class InferenceEndpointsTest {
+    
+    private final WebClient webClient = WebClient.create();
+    private final List<StubInferenceServer> stubs = new ArrayList<>();
+    
+    @AfterEach
+    void stopStubs() {
+        stubs.forEach(StubInferenceServer::close);
+    }
+    
+    @Test
+    void prefersTheReplicaWithFewerOutstandingRequests() {
+        StubInferenceServer fast = stub(Duration.ofMillis(20));
+        StubInferenceServer slow = stub(Duration.ofMillis(400));
+        InferenceEndpoints endpoints = endpoints(List.of(fast, slow), List.of());
+        
+        Flux.range(0, 60)
+                .flatMap(i -> detect(endpoints), 8)
+                .blockLast(Duration.ofSeconds(30));
+        
+        assertThat(fast.detectRequests() + slow.detectRequests()).isEqualTo(60);
+        assertThat(fast.detectRequests()).isGreaterThan(slow.detectRequests() * 3);
+    }
+    
+    @Test
+    void routesInProportionToWeight() {
+        StubInferenceServer heavy = stub(Duration.ZERO);
+        StubInferenceServer light = stub(Duration.ZERO);
+        InferenceEndpoints endpoints = endpoints(List.of(heavy, light), List.of(3, 1));
+        
+        for (int i = 0; i < 200; i++) {
+            detect(endpoints).block(Duration.ofSeconds(5));
+        }
+        
+        // 150 expected; the bounds are more than six standard deviations away
+        assertThat(heavy.detectRequests()).isBetween(110, 190);
+        assertThat(light.detectRequests()).isEqualTo(200 - heavy.detectRequests());
+    }
+    
+    @Test
+    void ejectsReplicaAfterConsecutiveFailures() {
+        StubInferenceServer healthy = stub(Duration.ZERO);
+        StubInferenceServer failing = stub(Duration.ZERO);
+        failing.setFailing(true);
+        InferenceEndpoints endpoints = endpoints(List.of(healthy, failing), List.of());
+        
+        AtomicInteger errors = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            detect(endpoints).onErrorResume(e -> {
+                errors.incrementAndGet();
+                return Mono.empty();
+            }).block(Duration.ofSeconds(5));
+        }
+        
+        assertThat(failing.detectRequests()).isEqualTo(3);
+        assertThat(errors.get()).isEqualTo(3);
+        assertThat(endpoints.getEndpoints().get(1).isEjected(System.nanoTime())).isTrue();
+    }
+    
+    @Test
+    void takesReplicaReportingItselfUnhealthyOutOfRotation() {
+        StubInferenceServer healthy = stub(Duration.ZERO);
+        StubInferenceServer unhealthy = stub(Duration.ZERO);
+        // Contains "healthy", which must not be taken for it
+        unhealthy.setHealthStatus("unhealthy");
+        InferenceEndpoints endpoints = endpoints(List.of(healthy, unhealthy), List.of());
+        
+        List<Boolean> probed = endpoints.getEndpoints().stream()
+                .map(endpoint -> endpoints.probe(endpoint, this::health).block(Duration.ofSeconds(5)))
+                .toList();
+        for (int i = 0; i < 20; i++) {
+            detect(endpoints).block(Duration.ofSeconds(5));
+        }
+        
+        assertThat(probed).containsExactly(true, false);
+        assertThat(endpoints.getEndpoints().get(1).isHealthy()).isFalse();
+        assertThat(unhealthy.detectRequests()).isZero();
+        
+        unhealthy.setHealthStatus("healthy");
+        assertThat(endpoints.probe(endpoints.getEndpoints().get(1), this::health).block(Duration.ofSeconds(5))).isTrue();
+        assertThat(endpoints.getEndpoints().get(1).isHealthy()).isTrue();
+    }
+    
+    @Test
+    void retriesOnAnotherReplicaWhenConnectionIsRefused() {
+        StubInferenceServer up = stub(Duration.ZERO);
+        StubInferenceServer down = stub(Duration.ZERO);
+        InferenceEndpoints endpoints = endpoints(List.of(up, down), List.of());
+        down.close();
+        
+        List<String> responses = Flux.range(0, 20)
+                .concatMap(i -> detect(endpoints))
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        
+        assertThat(responses).hasSize(20);
+        assertThat(up.detectRequests()).isEqualTo(20);
+    }
+    
+    @Test
+    void hedgesSlowCallsOnAnotherReplica() {
+        StubInferenceServer slow = stub(Duration.ofSeconds(3));
+        StubInferenceServer fast = stub(Duration.ofMillis(20));
+        // Hedge every call after 100 ms, without waiting for latency samples
+        HedgingPolicy hedging = new HedgingPolicy(new SimpleMeterRegistry(), true, 95, Duration.ofMillis(100), 200, 0, 1.0);
+        InferenceEndpoints endpoints = endpoints(List.of(slow, fast), List.of(), hedging);
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertThat(detect(endpoints).block(Duration.ofSeconds(5))).isNotNull();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        
+        // Every call that went to the slow replica first was answered by its hedge
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(3));
+        assertThat(fast.detectRequests()).isEqualTo(10);
+        assertThat(endpoints.getEndpoints().get(0).getOutstanding()).isZero();
+    }
+    
+    private StubInferenceServer stub(Duration latency) {
+        StubInferenceServer stub = StubInferenceServer.start(latency);
+        stubs.add(stub);
+        return stub;
+    }
+    
+    private static InferenceEndpoints endpoints(List<StubInferenceServer> stubs, List<Integer> weights) {
+        return endpoints(stubs, weights,
+                new HedgingPolicy(new SimpleMeterRegistry(), false, 95, Duration.ZERO, 200, 20, 0));
+    }
+    
+    private static InferenceEndpoints endpoints(List<StubInferenceServer> stubs, List<Integer> weights, HedgingPolicy hedging) {
+        return new InferenceEndpoints(new SimpleMeterRegistry(), hedging, "",
+                stubs.stream().map(StubInferenceServer::baseUrl).toList(), weights,
+                3, Duration.ofMinutes(1), Duration.ofMinutes(5));
+    }
+    
+    private Mono<JsonNode> health(String baseUrl) {
+        return webClient.get()
+                .uri(baseUrl + "/health")
+                .retrieve()
+                .bodyToMono(JsonNode.class);
+    }
+    
+    private Mono<String> detect(InferenceEndpoints endpoints) {
+        return endpoints.call(baseUrl -> webClient.post()
+                        .uri(baseUrl + "/api/v1/detect")
+                        .bodyValue("images")
+                        .retrieve()
+                        .bodyToMono(String.class),
+                e -> e instanceof WebClientRequestException
+                        || (e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError()));
+    }
+}
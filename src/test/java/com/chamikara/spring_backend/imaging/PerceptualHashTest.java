@@ -0,0 +1,80 @@
+package com.chamikara.spring_backend.imaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Difference hashes of synthetic images whose cell means are known
+ */
+class PerceptualHashTest {
+    
+    @Test
+    void identicalImagesAreZeroBitsApart() {
+        long hash = PerceptualHash.dHash(gradient(180, 80, 0));
+        
+        assertThat(PerceptualHash.distance(hash, PerceptualHash.dHash(gradient(180, 80, 0)))).isZero();
+        assertThat(PerceptualHash.distance(hash, hash ^ 0b1011)).isEqualTo(3);
+    }
+    
+    @Test
+    void ignoresSizeAndOverallBrightness() {
+        long hash = PerceptualHash.dHash(gradient(180, 80, 0));
+        
+        assertThat(PerceptualHash.distance(hash, PerceptualHash.dHash(ImageScaling.fit(gradient(180, 80, 0), 45))))
+                .isZero();
+        assertThat(PerceptualHash.distance(hash, PerceptualHash.dHash(gradient(180, 80, -40)))).isZero();
+    }
+    
+    @Test
+    void flipsEveryBitWhenTheGradientIsReversed() {
+        BufferedImage falling = gradient(180, 80, 0);
+        BufferedImage rising = new BufferedImage(180, 80, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 80; y++) {
+            for (int x = 0; x < 180; x++) {
+                rising.setRGB(x, y, falling.getRGB(179 - x, y));
+            }
+        }
+        
+        assertThat(PerceptualHash.dHash(falling)).isZero();
+        assertThat(PerceptualHash.dHash(rising)).isEqualTo(-1L);
+        assertThat(PerceptualHash.distance(PerceptualHash.dHash(falling), PerceptualHash.dHash(rising))).isEqualTo(64);
+    }
+    
+    @Test
+    void localizedHotspotChangesAtMostTwoBits() {
+        // A hotspot within one 20x10 cell of the 9x8 grid can only change the comparisons
+        // with its left and right neighbours, however hot it is
+        BufferedImage baseline = gradient(180, 80, 0);
+        BufferedImage maintenance = withHotspot(gradient(180, 80, 0), 85, 32, 10, 6);
+        
+        int distance = PerceptualHash.distance(PerceptualHash.dHash(baseline), PerceptualHash.dHash(maintenance));
+        
+        assertThat(distance).isBetween(1, 2);
+    }
+    
+    /**
+     * Grey image getting darker from left to right, so every dHash bit is 0
+     */
+    private static BufferedImage gradient(int width, int height, int offset) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = Math.max(0, Math.min(255, 255 - x * 255 / width + offset));
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+    
+    private static BufferedImage withHotspot(BufferedImage image, int x0, int y0, int width, int height) {
+        for (int y = y0; y < y0 + height; y++) {
+            for (int x = x0; x < x0 + width; x++) {
+                image.setRGB(x, y, 0xffffff);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,153 @@
+package com.chamikara.spring_backend.imaging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Statistics of a 5x3 grey image whose pixel (x, y) has intensity 10 * (5y + x), in 2x2
+ * tiles: three columns and two rows, the last column and row only one pixel wide
+ */
+class ThermalStatisticsTest {
+    
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    void splitsTheImageIntoTilesWithNarrowerEdgeTiles() {
+        ThermalStatistics statistics = ThermalStatistics.compute(image(), null, 2, 4, pool);
+        
+        assertThat(statistics.getColumns()).isEqualTo(3);
+        assertThat(statistics.getRows()).isEqualTo(2);
+        assertThat(statistics.getTileCount()).isEqualTo(6);
+        // Right column
+        assertThat(statistics.tileX(2)).isEqualTo(4);
+        assertThat(statistics.tileWidth(2)).isEqualTo(1);
+        assertThat(statistics.tileHeight(2)).isEqualTo(2);
+        // Bottom row
+        assertThat(statistics.tileY(3)).isEqualTo(2);
+        assertThat(statistics.tileWidth(3)).isEqualTo(2);
+        assertThat(statistics.tileHeight(3)).isEqualTo(1);
+        // Bottom right corner
+        assertThat(statistics.tileWidth(5)).isEqualTo(1);
+        assertThat(statistics.tileHeight(5)).isEqualTo(1);
+    }
+    
+    @Test
+    void countsIntensitiesIntoTileAndImageHistograms() {
+        ThermalStatistics statistics = ThermalStatistics.compute(image(), null, 2, 4, pool);
+        
+        // Bins of 64 intensities: 0, 10, 50 and 60
+        assertThat(statistics.histogram(0)).containsExactly(4, 0, 0, 0);
+        // 40 and 90
+        assertThat(statistics.histogram(2)).containsExactly(1, 1, 0, 0);
+        // 140
+        assertThat(statistics.histogram(5)).containsExactly(0, 0, 1, 0);
+        // 0 to 60, 70 to 120, 130 and 140
+        assertThat(statistics.histogram()).containsExactly(7, 6, 2, 0);
+    }
+    
+    @Test
+    void findsTheMaximumAndItsPositionInEveryTile() {
+        ThermalStatistics statistics = ThermalStatistics.compute(image(), null, 2, 4, pool);
+        
+        assertThat(statistics.max(0)).isEqualTo(60);
+        assertThat(statistics.maxX(0)).isEqualTo(1);
+        assertThat(statistics.maxY(0)).isEqualTo(1);
+        assertThat(statistics.mean(0)).isEqualTo(30.0);
+        
+        assertThat(statistics.max(2)).isEqualTo(90);
+        assertThat(statistics.maxX(2)).isEqualTo(4);
+        assertThat(statistics.maxY(2)).isEqualTo(1);
+        assertThat(statistics.mean(2)).isEqualTo(65.0);
+        
+        assertThat(statistics.max(3)).isEqualTo(110);
+        assertThat(statistics.maxX(3)).isEqualTo(1);
+        assertThat(statistics.maxY(3)).isEqualTo(2);
+        
+        assertThat(statistics.hottestTile()).isEqualTo(5);
+        assertThat(statistics.max(5)).isEqualTo(140);
+        assertThat(statistics.maxX(5)).isEqualTo(4);
+        assertThat(statistics.maxY(5)).isEqualTo(2);
+        assertThat(statistics.mean()).isEqualTo(70.0);
+    }
+    
+    @Test
+    void reportsTheFirstPixelWhenSeveralShareTheMaximum() {
+        BufferedImage uniform = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                uniform.setRGB(x, y, grey(200));
+            }
+        }
+        
+        ThermalStatistics statistics = ThermalStatistics.compute(uniform, null, 2, 4, pool);
+        
+        assertThat(statistics.maxX(3)).isEqualTo(2);
+        assertThat(statistics.maxY(3)).isEqualTo(2);
+        assertThat(statistics.hottestTile()).isZero();
+    }
+    
+    @Test
+    void differencesAgainstTheBaselinePerTile() {
+        BufferedImage baseline = image();
+        // Pixel (2, 1), intensity 70 in the image, is in tile 1
+        baseline.setRGB(2, 1, grey(0));
+        
+        ThermalStatistics statistics = ThermalStatistics.compute(image(), baseline, 2, 4, pool);
+        
+        assertThat(statistics.hasBaseline()).isTrue();
+        assertThat(statistics.maxDifference(1)).isEqualTo(70);
+        assertThat(statistics.meanDifference(1)).isEqualTo(17.5);
+        for (int tile : new int[]{0, 2, 3, 4, 5}) {
+            assertThat(statistics.maxDifference(tile)).isZero();
+            assertThat(statistics.meanDifference(tile)).isZero();
+        }
+        assertThat(statistics.meanDifference()).isEqualTo(70.0 / 15);
+    }
+    
+    @Test
+    void hasNoDifferenceWithoutABaseline() {
+        ThermalStatistics statistics = ThermalStatistics.compute(image(), null, 2, 4, pool);
+        
+        assertThat(statistics.hasBaseline()).isFalse();
+    }
+    
+    @Test
+    void rejectsABaselineOfAnotherSizeAndInvalidBins() {
+        BufferedImage smaller = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+        
+        assertThatThrownBy(() -> ThermalStatistics.compute(image(), smaller, 2, 4, pool))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ThermalStatistics.compute(image(), null, 2, 0, pool))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ThermalStatistics.compute(image(), null, 2, 257, pool))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static BufferedImage image() {
+        BufferedImage image = new BufferedImage(5, 3, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                image.setRGB(x, y, grey(10 * (5 * y + x)));
+            }
+        }
+        return image;
+    }
+    
+    /**
+     * Grey pixel whose luminance, as computed by {@link ThermalStatistics}, is the value itself
+     */
+    private static int grey(int value) {
+        return value << 16 | value << 8 | value;
+    }
+}
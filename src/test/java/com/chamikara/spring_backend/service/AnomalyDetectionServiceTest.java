@@ -0,0 +1,194 @@
+package com.chamikara.spring_backend.service;
+
+import com.chamikara.spring_backend.detection.AdaptiveConcurrencyLimit;
+import com.chamikara.spring_backend.detection.DetectionResultCache;
+import com.chamikara.spring_backend.detection.DetectionRethresholder;
+import com.chamikara.spring_backend.detection.DetectionScheduler;
+import com.chamikara.spring_backend.detection.InferenceCircuitBreaker;
+import com.chamikara.spring_backend.detection.InferenceEndpoints;
+import com.chamikara.spring_backend.dto.response.AnomalyDetectionResponse;
+import com.chamikara.spring_backend.imaging.ImageCodec;
+import com.chamikara.spring_backend.repository.ImageFingerprintRepository;
+import com.chamikara.spring_backend.service.InferenceImagePreprocessor.PreparedImage;
+import com.chamikara.spring_backend.storage.Base64Images;
+import com.chamikara.spring_backend.storage.ImageStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Detection paths in front of FastAPI, with FastAPI replaced by a mocked endpoint set
+ */
+class AnomalyDetectionServiceTest {
+    
+    private static final AnomalyDetectionResponse DETECTED = AnomalyDetectionResponse.builder()
+            .imageLevelLabel("Anomalous")
+            .anomalyCount(1)
+            .anomalies(List.of())
+            .build();
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InferenceImagePreprocessor preprocessor = mock(InferenceImagePreprocessor.class);
+    private final InferenceEndpoints endpoints = mock(InferenceEndpoints.class);
+    private final DetectionResultCache resultCache = mock(DetectionResultCache.class);
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(meterRegistry, 8, 8, 8, 2.0, 0.8);
+    private final DetectionScheduler scheduler = new DetectionScheduler(meterRegistry, limit, 100, List.of(),
+            Duration.ofMinutes(1), Duration.ofMinutes(1), 0.75, Duration.ofMinutes(1), 0.5);
+    
+    @BeforeEach
+    void setUp() {
+        when(preprocessor.cacheTag()).thenReturn("");
+        when(preprocessor.prepare(any(Resource.class), anyString())).thenAnswer(invocation ->
+                Mono.just(new PreparedImage(invocation.getArgument(0), invocation.getArgument(1), 1.0, 1.0)));
+        when(endpoints.<AnomalyDetectionResponse>call(any(), any())).thenReturn(Mono.just(DETECTED));
+        when(resultCache.get(any())).thenReturn(Mono.empty());
+    }
+    
+    @Test
+    void answersUnchangedImagesWithoutALabelOrFastApiCall() throws IOException {
+        AnomalyDetectionService service = service(prefilter(true, 4));
+        String image = png(gradient());
+        
+        AnomalyDetectionResponse response = service.detectAnomaliesAsync("TR-001", image, image, null, false)
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(response.getUnchanged()).isTrue();
+        assertThat(response.getPerceptualDistance()).isZero();
+        assertThat(response.getImageLevelLabel()).isNull();
+        assertThat(response.getAnomalyCount()).isZero();
+        verify(endpoints, never()).call(any(), any());
+    }
+    
+    @Test
+    void localizedHotspotIsTakenForUnchangedWithinTheDistance() throws IOException {
+        // Why the prefilter is off by default: a clear hotspot in one cell of the hash grid
+        // changes too few bits to count as a change at a distance of 4
+        AnomalyDetectionService service = service(prefilter(true, 4));
+        
+        AnomalyDetectionResponse response = service.detectAnomaliesAsync("TR-001",
+                        png(gradient()), png(gradientWithHotspot()), null, false)
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(response.getUnchanged()).isTrue();
+        assertThat(response.getPerceptualDistance()).isBetween(1, 2);
+        verify(endpoints, never()).call(any(), any());
+    }
+    
+    @Test
+    void sendsLocalizedHotspotToFastApiWhenThePrefilterIsOff() throws IOException {
+        AnomalyDetectionService service = service(prefilter(false, 4));
+        
+        AnomalyDetectionResponse response = service.detectAnomaliesAsync("TR-001",
+                        png(gradient()), png(gradientWithHotspot()), null, false)
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(response.getUnchanged()).isNull();
+        assertThat(response.getImageLevelLabel()).isEqualTo("Anomalous");
+        verify(endpoints, times(1)).call(any(), any());
+    }
+    
+    @Test
+    void forcedDetectionSkipsThePrefilter() throws IOException {
+        AnomalyDetectionService service = service(prefilter(true, 4));
+        String image = png(gradient());
+        
+        AnomalyDetectionResponse response = service.detectAnomaliesAsync("TR-001", image, image, null, true)
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(response.getUnchanged()).isNull();
+        assertThat(response.getImageLevelLabel()).isEqualTo("Anomalous");
+        verify(endpoints, times(1)).call(any(), any());
+    }
+    
+    @Test
+    void identicalDetectionsShareOneSchedulerSlot() throws IOException {
+        Sinks.One<AnomalyDetectionResponse> fastApi = Sinks.one();
+        when(endpoints.<AnomalyDetectionResponse>call(any(), any())).thenReturn(fastApi.asMono());
+        AnomalyDetectionService service = service(prefilter(false, 4));
+        String baseline = png(gradient());
+        String maintenance = png(gradientWithHotspot());
+        
+        List<AnomalyDetectionResponse> responses = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            service.detectAnomaliesAsync("TR-001", baseline, maintenance, null, false).subscribe(responses::add);
+        }
+        
+        // Eight identical requests fill one slot of the limit of eight, not all of them
+        assertThat(scheduler.getRunning()).isEqualTo(1);
+        verify(endpoints, times(1)).call(any(), any());
+        
+        // Other detections are still admitted meanwhile
+        service.detectAnomaliesAsync("TR-002", maintenance, baseline, null, false).subscribe();
+        assertThat(scheduler.getRunning()).isEqualTo(2);
+        
+        // Both calls are answered by the same pending FastAPI response
+        fastApi.tryEmitValue(DETECTED);
+        assertThat(responses).hasSize(8);
+        assertThat(scheduler.getRunning()).isZero();
+    }
+    
+    private PerceptualHashService prefilter(boolean enabled, int maxDistance) {
+        return new PerceptualHashService(mock(ImageStore.class), mock(ImageFingerprintRepository.class),
+                enabled, maxDistance, 1, 10);
+    }
+    
+    private AnomalyDetectionService service(PerceptualHashService prefilter) {
+        InferenceCircuitBreaker breaker = new InferenceCircuitBreaker(meterRegistry, 20, 10, 50,
+                Duration.ofSeconds(20), Duration.ofSeconds(30), 3);
+        return new AnomalyDetectionService(mock(ImageService.class), preprocessor, prefilter,
+                resultCache, mock(DetectionRethresholder.class), scheduler, breaker, limit,
+                endpoints, mock(WebClient.class), meterRegistry, "/api/v1/detect", 60000, "test",
+                DataSize.ofKilobytes(64), Duration.ofSeconds(10), Duration.ofSeconds(5));
+    }
+    
+    private static String png(BufferedImage image) throws IOException {
+        return Base64Images.toDataUri(ImageCodec.encodePng(image), "image/png");
+    }
+    
+    /**
+     * Grey image darkening from left to right
+     */
+    private static BufferedImage gradient() {
+        BufferedImage image = new BufferedImage(180, 80, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 80; y++) {
+            for (int x = 0; x < 180; x++) {
+                int value = 255 - x * 255 / 180;
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+    
+    /**
+     * The gradient with a white hotspot inside one cell of the 9x8 hash grid
+     */
+    private static BufferedImage gradientWithHotspot() {
+        BufferedImage image = gradient();
+        for (int y = 32; y < 38; y++) {
+            for (int x = 85; x < 95; x++) {
+                image.setRGB(x, y, 0xffffff);
+            }
+        }
+        return image;
+    }
+}
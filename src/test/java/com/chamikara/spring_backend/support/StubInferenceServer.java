@@ -0,0 +1,180 @@
+package com.chamikara.spring_backend.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the FastAPI inference service. Answers {@code /api/v1/detect}
+ * after a latency drawn from a configurable distribution, with a result holding a
+ * configurable number of anomalies, and {@code /health} immediately with a configurable
+ * status. Detections fail with
+ * {@code 500} at a configurable error rate, or always while set to fail. Each exchange runs
+ * on its own virtual thread, so the stub itself never limits concurrency.
+ */
+public final class StubInferenceServer implements AutoCloseable {
+    
+    private static final String DETECT_RESPONSE = """
+            {"requestId":"stub","transformerId":"stub","imageLevelLabel":"Anomalous","anomalyCount":%d,
+             "anomalies":[%s]}""";
+    
+    private static final String ANOMALY = """
+            {"id":"a%d","bbox":{"x":%d,"y":20,"width":30,"height":40},
+             "confidence":0.9,"severity":"HIGH","classification":"Hotspot","area":1200}""";
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger detectRequests = new AtomicInteger();
+    private volatile LatencyDistribution latency;
+    private volatile double errorRate;
+    private volatile boolean failing;
+    private volatile String detectResponse = detectResponse(1);
+    private volatile String healthStatus = "healthy";
+    
+    private StubInferenceServer(LatencyDistribution latency) throws IOException {
+        this.latency = latency;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext("/api/v1/detect", this::detect);
+        this.server.createContext("/health", exchange -> respond(exchange, "{\"status\":\"%s\"}".formatted(healthStatus)));
+    }
+    
+    public static StubInferenceServer start(Duration latency) {
+        return start(LatencyDistribution.fixed(latency));
+    }
+    
+    public static StubInferenceServer start(LatencyDistribution latency) {
+        try {
+            StubInferenceServer stub = new StubInferenceServer(latency);
+            stub.server.start();
+            return stub;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start stub inference server", e);
+        }
+    }
+    
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+    
+    public int detectRequests() {
+        return detectRequests.get();
+    }
+    
+    public void setLatency(Duration latency) {
+        this.latency = LatencyDistribution.fixed(latency);
+    }
+    
+    public void setLatency(LatencyDistribution latency) {
+        this.latency = latency;
+    }
+    
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+    
+    /**
+     * Set the {@code status} reported by {@code /health}
+     */
+    public void setHealthStatus(String healthStatus) {
+        this.healthStatus = healthStatus;
+    }
+    
+    /**
+     * @param errorRate share of detections, from 0 to 1, answered with {@code 500}
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+    
+    /**
+     * Set the number of anomalies in each detection result, which sets its size
+     */
+    public void setAnomalyCount(int anomalyCount) {
+        this.detectResponse = detectResponse(anomalyCount);
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void detect(HttpExchange exchange) throws IOException {
+        detectRequests.incrementAndGet();
+        try (InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        try {
+            Thread.sleep(latency.next());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+        if (failing || ThreadLocalRandom.current().nextDouble() < errorRate) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, detectResponse);
+    }
+    
+    private static String detectResponse(int anomalyCount) {
+        StringJoiner anomalies = new StringJoiner(",");
+        for (int i = 1; i <= anomalyCount; i++) {
+            anomalies.add(ANOMALY.formatted(i, 10 * i));
+        }
+        return DETECT_RESPONSE.formatted(anomalyCount, anomalies);
+    }
+    
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    /**
+     * Source of the stub's inference latency, sampled once per detection
+     */
+    @FunctionalInterface
+    public interface LatencyDistribution {
+        
+        Duration next();
+        
+        static LatencyDistribution fixed(Duration latency) {
+            return () -> latency;
+        }
+        
+        static LatencyDistribution uniform(Duration min, Duration max) {
+            return () -> Duration.ofNanos(ThreadLocalRandom.current().nextLong(min.toNanos(), max.toNanos() + 1));
+        }
+        
+        /**
+         * Log-normal latency, the usual shape of service latencies: most calls near the
+         * median and a long tail reaching {@code p99} for one call in a hundred
+         */
+        static LatencyDistribution logNormal(Duration median, Duration p99) {
+            // 2.326 is the standard normal 99th percentile
+            double sigma = Math.log((double) p99.toNanos() / median.toNanos()) / 2.326;
+            return () -> Duration.ofNanos(Math.round(
+                    median.toNanos() * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian())));
+        }
+    }
+}